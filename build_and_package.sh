@@ -4,7 +4,7 @@
 set -e
 
 # Define directories and configurations
-MODULES=("statistics-spi" "statistics-test-base" "statistics-atomic" "statistics-lock")
+MODULES=("statistics-spi" "statistics-test-base" "statistics-atomic" "statistics-lock" "statistics-striped" "statistics-threadlocal" "statistics-varhandle" "statistics-stamped" "statistics-vector" "statistics-adaptive" "statistics-histogram" "statistics-tdigest" "statistics-ddsketch" "statistics-window" "statistics-decaying" "statistics-registry" "statistics-offheap" "statistics-mapped" "statistics-wal" "statistics-ring" "statistics-ingest" "statistics-actor" "statistics-wide")
 CLIENT_MODULE="statistics-client"
 MAIN_CLASS="in.shashwattiwari.statistics.StatisticsClient"
 OUTPUT_DIR="dist"
@@ -92,7 +92,7 @@ if [ -z "\$JAVA_HOME" ]; then
     echo "JAVA_HOME set to: \$JAVA_HOME"
 fi
 
-java -cp "../lib/*" $MAIN_CLASS
+java --add-modules jdk.incubator.vector -cp "../lib/*" $MAIN_CLASS
 EOF
 chmod +x "$OUTPUT_DIR/bin/$BIN_SCRIPT"
 
@@ -0,0 +1,331 @@
+package in.shashwattiwari.statistics;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code ActorThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface as a
+ * set of shard actors, in the spirit of the actor model of frameworks like Akka but without any dependency.
+ *
+ * <p>Each shard actor owns a private accumulator and a mailbox, and runs on a virtual thread of its own. Recording
+ * an event only posts it to the mailbox of one shard, chosen by the recording thread or, with
+ * {@link #event(long, int)}, by a key. The actor takes all messages in its mailbox at once and applies them one at
+ * a time to its accumulator, which no other thread ever reads or writes, so the accumulator needs no
+ * synchronization at all. A read asks every shard for its state with a message of its own and merges the answers.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>Mailboxes are bounded {@code int} buffers, so events are not boxed and a shard that falls behind slows its
+ *   senders down instead of growing without limit.</li>
+ *   <li>A read message is answered after every event that was in the mailbox before it, so reads see all events
+ *   recorded before them.</li>
+ *   <li>Idle actors park their virtual thread, which costs no platform thread.</li>
+ *   <li>Batches and merged snapshots are pre-aggregated and posted as a single snapshot message.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     try (ActorThreadSafeStatistics stats = new ActorThreadSafeStatistics(4)) {
+ *         stats.event(5);
+ *         stats.event(42L, 10);
+ *         System.out.println("Mean: " + stats.mean());
+ *     }
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * Posting a message takes the mailbox lock of one shard, which only contends with the other threads routed to the
+ * same shard and with its actor taking the mailbox. Reads are expensive: they wait for a round trip through every
+ * actor. Actors are stopped by {@link #close()} or once the instance is unreachable.
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class ActorThreadSafeStatistics implements Statistics, AutoCloseable {
+
+    static final int MAILBOX_SIZE = 4096;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * One actor: a mailbox guarded by a lock, and a private accumulator only touched by the actor's thread. Holds
+     * no reference to the outer instance, so that the instance can become unreachable while the actor runs.
+     */
+    private static final class Shard implements Runnable {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+
+        // mailbox, guarded by lock
+        private int[] events = new int[MAILBOX_SIZE];
+        private int size;
+        private StatisticsSnapshot merged = StatisticsSnapshot.EMPTY;
+        private List<CompletableFuture<StatisticsSnapshot>> reads = new ArrayList<>();
+        private boolean stopped;
+
+        private final CompletableFuture<StatisticsSnapshot> terminated = new CompletableFuture<>();
+
+        // accumulator, only touched by the actor
+        private int[] processing = new int[MAILBOX_SIZE];
+        private List<CompletableFuture<StatisticsSnapshot>> answering = new ArrayList<>();
+        private long count;
+        private long sum;
+        private long sumOfSquaresHigh;
+        private long sumOfSquares;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+
+        void tell(int n) {
+            lock.lock();
+            try {
+                while (size == events.length && !stopped) {
+                    notFull.awaitUninterruptibly();
+                }
+                checkRunning();
+                signalIfEmpty();
+                events[size++] = n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void tell(StatisticsSnapshot snapshot) {
+            lock.lock();
+            try {
+                checkRunning();
+                signalIfEmpty();
+                merged = merged.merge(snapshot);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        CompletableFuture<StatisticsSnapshot> ask() {
+            lock.lock();
+            try {
+                if (stopped) return terminated;
+
+                CompletableFuture<StatisticsSnapshot> read = new CompletableFuture<>();
+                signalIfEmpty();
+                reads.add(read);
+                return read;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void stop() {
+            lock.lock();
+            try {
+                stopped = true;
+                notEmpty.signal();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int length;
+                StatisticsSnapshot snapshot;
+                boolean last;
+                lock.lock();
+                try {
+                    while (isEmpty() && !stopped) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    int[] taken = events;
+                    events = processing;
+                    processing = taken;
+                    length = size;
+                    size = 0;
+                    snapshot = merged;
+                    merged = StatisticsSnapshot.EMPTY;
+                    List<CompletableFuture<StatisticsSnapshot>> asked = reads;
+                    reads = answering;
+                    answering = asked;
+                    last = stopped;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                for (int i = 0; i < length; i++) {
+                    int n = processing[i];
+                    count++;
+                    sum += n;
+                    long square = (long) n * n;
+                    sumOfSquaresHigh += Int128.carry(sumOfSquares, square);
+                    sumOfSquares += square;
+                    min = Math.min(min, n);
+                    max = Math.max(max, n);
+                }
+                if (snapshot.count() != 0) {
+                    count += snapshot.count();
+                    sum += snapshot.sum();
+                    sumOfSquaresHigh += snapshot.sumOfSquaresHigh()
+                            + Int128.carry(sumOfSquares, snapshot.sumOfSquares());
+                    sumOfSquares += snapshot.sumOfSquares();
+                    min = Math.min(min, snapshot.min());
+                    max = Math.max(max, snapshot.max());
+                }
+                if (!answering.isEmpty() || last) {
+                    StatisticsSnapshot state = state();
+                    answering.forEach(read -> read.complete(state));
+                    answering.clear();
+                    if (last) {
+                        terminated.complete(state);
+                        return;
+                    }
+                }
+            }
+        }
+
+        private StatisticsSnapshot state() {
+            return count == 0
+                    ? StatisticsSnapshot.EMPTY
+                    : new StatisticsSnapshot(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+        }
+
+        private boolean isEmpty() {
+            return size == 0 && merged.count() == 0 && reads.isEmpty();
+        }
+
+        private void signalIfEmpty() {
+            if (isEmpty()) {
+                notEmpty.signal();
+            }
+        }
+
+        private void checkRunning() {
+            if (stopped) {
+                throw new IllegalStateException("Statistics actors are stopped");
+            }
+        }
+    }
+
+    private final Shard[] shards;
+    private final Thread[] actors;
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * One shard per available processor.
+     */
+    public ActorThreadSafeStatistics() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ActorThreadSafeStatistics(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        Shard[] shards = new Shard[shardCount];
+        this.actors = new Thread[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+            actors[i] = Thread.ofVirtual().name("statistics-actor-" + i).start(shards[i]);
+        }
+        this.shards = shards;
+        this.cleanable = CLEANER.register(this, () -> {
+            for (Shard shard : shards) {
+                shard.stop();
+            }
+        });
+    }
+
+    /**
+     * Posts {@code n} to the shard of the calling thread.
+     */
+    @Override
+    public void event(int n) {
+        shard(Thread.currentThread().threadId()).tell(n);
+    }
+
+    /**
+     * Posts {@code n} to the shard of {@code key}, so all events of a key are applied by the same actor, in order.
+     */
+    public void event(long key, int n) {
+        shard(key).tell(n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        shard(Thread.currentThread().threadId()).tell(snapshot);
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Asks every shard for its state, all at once, and merges the answers.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        List<CompletableFuture<StatisticsSnapshot>> answers = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            answers.add(shard.ask());
+        }
+        StatisticsSnapshot snapshot = StatisticsSnapshot.EMPTY;
+        for (CompletableFuture<StatisticsSnapshot> answer : answers) {
+            snapshot = snapshot.merge(answer.join());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Applies the messages still in the mailboxes and stops the actors. Later events are rejected, reads return
+     * the final state.
+     */
+    @Override
+    public void close() {
+        cleanable.clean();
+        boolean interrupted = false;
+        for (Thread actor : actors) {
+            while (actor.isAlive()) {
+                try {
+                    actor.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Shard shard(long hash) {
+        // spreads consecutive thread ids and keys across shards
+        return shards[(int) (((hash * 0x9E3779B97F4A7C15L) >>> 32) % shards.length)];
+    }
+}
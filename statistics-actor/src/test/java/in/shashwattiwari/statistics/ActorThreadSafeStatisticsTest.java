@@ -0,0 +1,73 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ActorThreadSafeStatisticsTest extends StatisticsTestBase {
+
+    private final List<ActorThreadSafeStatistics> opened = new ArrayList<>();
+
+    @AfterEach
+    public void closeAll() {
+        opened.forEach(ActorThreadSafeStatistics::close);
+    }
+
+    @Override
+    protected Statistics createStatistics() {
+        return open(4);
+    }
+
+    @Test
+    public void testKeyedEventsOnVirtualThreads() throws InterruptedException {
+        ActorThreadSafeStatistics statistics = open(3);
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < 100; t++) {
+                long key = t;
+                executorService.submit(() -> {
+                    for (int i = 1; i <= 2 * ActorThreadSafeStatistics.MAILBOX_SIZE; i++) {
+                        statistics.event(key, i);
+                    }
+                });
+            }
+            executorService.shutdown();
+            assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS), "Senders should not deadlock.");
+        }
+        long n = 2 * ActorThreadSafeStatistics.MAILBOX_SIZE;
+        assertEquals(100 * n, statistics.snapshot().count(), "Every keyed event should be applied.");
+        assertEquals(100 * n * (n + 1) / 2, statistics.snapshot().sum(), "Every keyed event should be applied.");
+    }
+
+    @Test
+    public void testCloseAppliesMailboxes() {
+        ActorThreadSafeStatistics statistics = open(2);
+        for (int i = 0; i < 100; i++) {
+            statistics.event(i);
+        }
+        statistics.merge(new StatisticsSnapshot(1, -1, 1, -1, -1));
+        statistics.close();
+        assertEquals(101, statistics.snapshot().count(), "Closing should apply every posted message.");
+        assertEquals(-1, statistics.min(), "Closing should apply posted merges.");
+        assertThrows(IllegalStateException.class, () -> statistics.event(1));
+    }
+
+    @Test
+    public void testShardCountMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new ActorThreadSafeStatistics(0));
+    }
+
+    private ActorThreadSafeStatistics open(int shardCount) {
+        ActorThreadSafeStatistics statistics = new ActorThreadSafeStatistics(shardCount);
+        opened.add(statistics);
+        return statistics;
+    }
+}
@@ -0,0 +1,336 @@
+package in.shashwattiwari.statistics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * {@code AdaptiveThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface
+ * that picks its write strategy at runtime, based on the contention it observes.
+ *
+ * <p>An instance starts compact: all events go through a single compare-and-set of an immutable
+ * {@link StatisticsSnapshot}, exactly like {@code AtomicThreadSafeStatistics}. This is the cheapest option for the
+ * common case of an instance that is written by one thread at a time, and it only costs one padded cell.
+ * Every failed compare-and-set is counted. When too many of them pile up within a window of successful updates,
+ * the instance inflates into a table of padded cells indexed by thread, like {@code StripedThreadSafeStatistics},
+ * so concurrent writers stop invalidating each other's cache lines.
+ *
+ * <p>Once inflated, the instance periodically checks how many cells were written since the last check. If at most
+ * one was, the contention has gone away: the cells are sealed, their partials are folded back into the compact
+ * cell and the table is dropped.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>Inflating and collapsing are guarded by a flag, so at most one thread changes the layout at a time and
+ *   writers never wait for it.</li>
+ *   <li>A collapse seals each cell with a sentinel before folding it. A writer that loses its compare-and-set to
+ *   the sentinel re-reads the layout and retries on the compact cell, so no event is lost.</li>
+ *   <li>Collapses are bracketed by an epoch counter that is odd while partials move between cells. Readers retry
+ *   when the epoch changed under them, so they never count a partial twice or miss it.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     Statistics stats = new AdaptiveThreadSafeStatistics();
+ *     stats.event(5);
+ *     stats.event(10);
+ *     System.out.println("Mean: " + stats.mean());
+ *     System.out.println("Variance: " + stats.variance());
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * <ul>
+ *   <li>Every event allocates one small snapshot, as in {@code AtomicThreadSafeStatistics}.</li>
+ *   <li>A workload that alternates between contended and quiet phases faster than the check intervals may inflate
+ *   and collapse repeatedly; each transition costs one pass over the cell table.</li>
+ *   <li>Like {@code StripedThreadSafeStatistics}, a read of an inflated instance is consistent per cell but not
+ *   across cells.</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class AdaptiveThreadSafeStatistics implements Statistics {
+
+    // failed compare-and-sets on the compact cell that trigger inflation...
+    static final int CONTENTION_THRESHOLD = 16;
+    // ...when they happen within this many successful updates
+    static final int CONTENTION_WINDOW = 1 << 10;
+    // events recorded by a cell between two checks for a collapse
+    static final int COLLAPSE_CHECK_INTERVAL = 1 << 12;
+
+    private static final int TABLE_SIZE = tableSizeFor(Runtime.getRuntime().availableProcessors());
+
+    // Written into a cell when it is folded back, never observable through snapshot()
+    private static final StatisticsSnapshot SEALED = new StatisticsSnapshot(0, 0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE);
+
+    private static final VarHandle CONTENTION;
+    private static final VarHandle RESIZING;
+    private static final VarHandle EPOCH;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            CONTENTION = lookup.findVarHandle(AdaptiveThreadSafeStatistics.class, "contention", int.class);
+            RESIZING = lookup.findVarHandle(AdaptiveThreadSafeStatistics.class, "resizing", boolean.class);
+            EPOCH = lookup.findVarHandle(AdaptiveThreadSafeStatistics.class, "epoch", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Left padding, keeps the previous object's hot fields off this cell's cache line
+    private static class CellPadding {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    private static class CellValues extends CellPadding {
+        volatile StatisticsSnapshot value = StatisticsSnapshot.EMPTY;
+        // count at the last collapse check, only touched while holding the resizing flag
+        long sampled;
+    }
+
+    // Right padding, keeps the next object's hot fields off this cell's cache line
+    private static final class Cell extends CellValues {
+        long p11, p12, p13, p14, p15, p16, p17;
+
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(CellValues.class, "value", StatisticsSnapshot.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        boolean compareAndSet(StatisticsSnapshot expected, StatisticsSnapshot value) {
+            return VALUE.compareAndSet(this, expected, value);
+        }
+
+        StatisticsSnapshot seal() {
+            return (StatisticsSnapshot) VALUE.getAndSet(this, SEALED);
+        }
+    }
+
+    private final Cell base = new Cell();
+
+    // null while compact
+    private volatile Cell[] cells;
+
+    private volatile int contention;
+    private volatile boolean resizing;
+    // odd while a collapse moves partials from the cells to the base
+    private volatile long epoch;
+
+    @Override
+    public void event(int n) {
+        add(1, n, 0, (long) n * n, n, n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        add(snapshot.count(), snapshot.sum(), snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares(), snapshot.min(),
+                snapshot.max());
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Folds the compact cell and, if inflated, every other cell. Retries if a collapse moved partials in the
+     * meantime.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        while (true) {
+            long before = epoch;
+            if ((before & 1) == 0) {
+                StatisticsSnapshot total = base.value;
+                Cell[] cs = cells;
+                if (cs != null) {
+                    for (Cell cell : cs) {
+                        StatisticsSnapshot value = cell.value;
+                        if (value != SEALED) {
+                            total = total.merge(value);
+                        }
+                    }
+                }
+                if (before == epoch) {
+                    return total;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Whether writes currently go to the striped cells.
+     */
+    boolean isInflated() {
+        return cells != null;
+    }
+
+    /**
+     * Switches to striped cells. Returns {@code false} if already inflated or another thread is resizing.
+     */
+    boolean inflate() {
+        if (!RESIZING.compareAndSet(this, false, true)) return false;
+        try {
+            if (cells != null) return false;
+
+            Cell[] created = new Cell[TABLE_SIZE];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new Cell();
+            }
+            cells = created;
+            return true;
+        } finally {
+            contention = 0;
+            resizing = false;
+        }
+    }
+
+    /**
+     * Folds the striped cells back into the compact cell. Returns {@code false} if not inflated or another
+     * thread is resizing.
+     */
+    boolean collapse() {
+        if (!RESIZING.compareAndSet(this, false, true)) return false;
+        try {
+            Cell[] cs = cells;
+            if (cs == null) return false;
+
+            collapse(cs);
+            return true;
+        } finally {
+            resizing = false;
+        }
+    }
+
+    // Must be called with the resizing flag held
+    private void collapse(Cell[] cs) {
+        long e = epoch;
+        EPOCH.setVolatile(this, e + 1);
+        // new writers go to the base from now on, writers still on a cell lose their CAS to the seal
+        cells = null;
+        for (Cell cell : cs) {
+            StatisticsSnapshot partial = cell.seal();
+            StatisticsSnapshot current;
+            do {
+                current = base.value;
+            } while (!base.compareAndSet(current, current.merge(partial)));
+        }
+        contention = 0;
+        EPOCH.setVolatile(this, e + 2);
+    }
+
+    private void add(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+        while (true) {
+            Cell[] cs = cells;
+            if (cs == null) {
+                StatisticsSnapshot current = base.value;
+                StatisticsSnapshot next = plus(current, count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+                if (base.compareAndSet(current, next)) {
+                    if (crossed(current, next, CONTENTION_WINDOW)) {
+                        contention = 0;
+                    }
+                    return;
+                }
+                if ((int) CONTENTION.getAndAdd(this, 1) + 1 >= CONTENTION_THRESHOLD) {
+                    inflate();
+                }
+            } else {
+                Cell cell = cs[mix(Thread.currentThread().threadId()) & (cs.length - 1)];
+                StatisticsSnapshot current = cell.value;
+                // a sealed cell belongs to a collapse in progress, re-read the layout
+                if (current != SEALED) {
+                    StatisticsSnapshot next = plus(current, count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+                    if (cell.compareAndSet(current, next)) {
+                        if (crossed(current, next, COLLAPSE_CHECK_INTERVAL)) {
+                            maybeCollapse(cs);
+                        }
+                        return;
+                    }
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Collapses if at most one cell was written since the previous check.
+     */
+    private void maybeCollapse(Cell[] cs) {
+        if (!RESIZING.compareAndSet(this, false, true)) return;
+        try {
+            if (cells != cs) return;
+
+            int active = 0;
+            for (Cell cell : cs) {
+                long count = cell.value.count();
+                if (count != cell.sampled) {
+                    active++;
+                    cell.sampled = count;
+                }
+            }
+            if (active <= 1) {
+                collapse(cs);
+            }
+        } finally {
+            resizing = false;
+        }
+    }
+
+    private static StatisticsSnapshot plus(StatisticsSnapshot snapshot, long count, long sum, long sumOfSquaresHigh,
+                                           long sumOfSquares, int min, int max) {
+        if (snapshot.count() == 0) {
+            return new StatisticsSnapshot(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+        }
+        return new StatisticsSnapshot(
+                snapshot.count() + count,
+                snapshot.sum() + sum,
+                snapshot.sumOfSquaresHigh() + sumOfSquaresHigh + Int128.carry(snapshot.sumOfSquares(), sumOfSquares),
+                snapshot.sumOfSquares() + sumOfSquares,
+                Math.min(snapshot.min(), min),
+                Math.max(snapshot.max(), max));
+    }
+
+    // Whether an update from before to after crossed a multiple of interval, a power of two
+    private static boolean crossed(StatisticsSnapshot before, StatisticsSnapshot after, int interval) {
+        return (before.count() ^ after.count()) >= interval;
+    }
+
+    // Thread ids are sequential, spread them so neighbouring threads land on different cells
+    private static int mix(long threadId) {
+        long h = threadId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int processors) {
+        return Integer.highestOneBit(Math.max(1, processors - 1)) << 1;
+    }
+}
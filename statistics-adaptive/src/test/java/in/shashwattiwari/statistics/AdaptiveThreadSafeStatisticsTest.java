@@ -0,0 +1,84 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveThreadSafeStatisticsTest extends StatisticsTestBase {
+    @Override
+    protected Statistics createStatistics() {
+        return new AdaptiveThreadSafeStatistics();
+    }
+
+    @Test
+    public void testEventsSurviveInflateAndCollapse() {
+        AdaptiveThreadSafeStatistics statistics = new AdaptiveThreadSafeStatistics();
+        statistics.event(5);
+        assertTrue(statistics.inflate(), "A compact instance should inflate.");
+        assertTrue(statistics.isInflated());
+        statistics.event(15);
+        assertEquals(10, statistics.mean(), 0.001, "Mean should include events on both sides of the inflation.");
+
+        assertTrue(statistics.collapse(), "An inflated instance should collapse.");
+        assertFalse(statistics.isInflated());
+        statistics.event(-20);
+        assertEquals(-20, statistics.min(), "Minimum value is incorrect.");
+        assertEquals(15, statistics.max(), "Maximum value is incorrect.");
+        assertEquals(3, statistics.snapshot().count(), "Events should not be lost by a collapse.");
+        assertFalse(statistics.collapse(), "A compact instance cannot collapse.");
+    }
+
+    @Test
+    public void testSingleWriterCollapses() {
+        AdaptiveThreadSafeStatistics statistics = new AdaptiveThreadSafeStatistics();
+        statistics.inflate();
+        for (int i = 0; i < AdaptiveThreadSafeStatistics.COLLAPSE_CHECK_INTERVAL; i++) {
+            statistics.event(i);
+        }
+        assertFalse(statistics.isInflated(), "A single writer should bring the instance back to compact.");
+        assertEquals(AdaptiveThreadSafeStatistics.COLLAPSE_CHECK_INTERVAL, statistics.snapshot().count());
+    }
+
+    @Test
+    public void testConcurrentEventsDuringTransitions() throws InterruptedException {
+        AdaptiveThreadSafeStatistics statistics = new AdaptiveThreadSafeStatistics();
+        int writers = 4;
+        int eventsPerWriter = 50_000;
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread resizer = new Thread(() -> {
+            while (!done.get()) {
+                statistics.inflate();
+                statistics.collapse();
+            }
+        });
+        Thread[] threads = new Thread[writers];
+        for (int t = 0; t < writers; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= eventsPerWriter; i++) {
+                    statistics.event(i);
+                }
+            });
+        }
+
+        resizer.start();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.set(true);
+        resizer.join();
+
+        StatisticsSnapshot snapshot = statistics.snapshot();
+        assertEquals((long) writers * eventsPerWriter, snapshot.count(), "No event should be lost or counted twice.");
+        assertEquals((long) writers * eventsPerWriter * (eventsPerWriter + 1) / 2, snapshot.sum(), "Sum is incorrect.");
+        assertEquals(1, snapshot.min(), "Minimum value is incorrect.");
+        assertEquals(eventsPerWriter, snapshot.max(), "Maximum value is incorrect.");
+    }
+}
@@ -52,30 +52,52 @@ public class AtomicThreadSafeStatistics implements Statistics {
         final int min;
         final int max;
         final long sum;
+        final long sumOfSquaresHigh;
         final long sumOfSquares;
-        final int count;
+        final long count;
 
-        Stats(int min, int max, long sum, long sumOfSquares, int count) {
+        Stats(int min, int max, long sum, long sumOfSquaresHigh, long sumOfSquares, long count) {
             this.min = min;
             this.max = max;
             this.sum = sum;
+            this.sumOfSquaresHigh = sumOfSquaresHigh;
             this.sumOfSquares = sumOfSquares;
             this.count = count;
         }
+
+        // adds a 128-bit sum of squares to this one
+        Stats plus(int min, int max, long sum, long sumOfSquaresHigh, long sumOfSquares, long count) {
+            return new Stats(
+                    Math.min(this.min, min),
+                    Math.max(this.max, max),
+                    this.sum + sum,
+                    this.sumOfSquaresHigh + sumOfSquaresHigh + Int128.carry(this.sumOfSquares, sumOfSquares),
+                    this.sumOfSquares + sumOfSquares,
+                    this.count + count);
+        }
     }
 
     // Single atomic reference to hold all stats
-    private final AtomicReference<Stats> stats = new AtomicReference<>(new Stats(Integer.MAX_VALUE, Integer.MIN_VALUE, 0, 0, 0));
+    private final AtomicReference<Stats> stats = new AtomicReference<>(new Stats(Integer.MAX_VALUE, Integer.MIN_VALUE, 0, 0, 0, 0));
 
     @Override
     public void event(int n) {
-        stats.updateAndGet(current -> new Stats(
-                Math.min(current.min, n),
-                Math.max(current.max, n),
-                current.sum + n,
-                current.sumOfSquares + (long) n * n,
-                current.count + 1
-        ));
+        long square = (long) n * n;
+        stats.updateAndGet(current -> current.plus(n, n, n, 0, square, 1));
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        // publish the whole snapshot with a single CAS
+        stats.updateAndGet(current -> current.plus(snapshot.min(), snapshot.max(), snapshot.sum(),
+                snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares(), snapshot.count()));
     }
 
     @Override
@@ -100,9 +122,15 @@ public class AtomicThreadSafeStatistics implements Statistics {
     @Override
     public float variance() {
         Stats current = stats.get();
-        if (current.count == 0) return 0;
         // eventually consistent
-        float mean = (float) current.sum / current.count;
-        return (float) current.sumOfSquares / current.count - mean * mean;
+        return StatisticsSnapshot.variance(current.count, current.sum, current.sumOfSquaresHigh,
+                current.sumOfSquares);
+    }
+
+    @Override
+    public StatisticsSnapshot snapshot() {
+        Stats current = stats.get();
+        return new StatisticsSnapshot(current.count, current.sum, current.sumOfSquaresHigh, current.sumOfSquares,
+                current.min, current.max);
     }
 }
@@ -0,0 +1,55 @@
+package in.shashwattiwari.statistics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and the SIMD {@link BatchAggregator} kernels across batch sizes.
+ *
+ * <pre>
+ *     java -jar statistics-benchmarks/target/benchmarks.jar BatchAggregatorBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class BatchAggregatorBenchmark {
+
+    @Param({"16", "256", "4096", "65536"})
+    private int batchSize;
+
+    private final BatchAggregator scalar = new ScalarBatchAggregator();
+    private final BatchAggregator vector = new VectorBatchAggregator();
+
+    private int[] values;
+
+    @Setup
+    public void setUp() {
+        values = new Random(42).ints(batchSize).toArray();
+    }
+
+    @Benchmark
+    public StatisticsSnapshot scalar() {
+        return scalar.aggregate(values, 0, batchSize);
+    }
+
+    @Benchmark
+    public StatisticsSnapshot vector() {
+        return vector.aggregate(values, 0, batchSize);
+    }
+}
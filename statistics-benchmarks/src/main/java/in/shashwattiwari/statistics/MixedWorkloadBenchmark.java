@@ -0,0 +1,77 @@
+package in.shashwattiwari.statistics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writers and readers hitting the same provider at the same time, e.g. ingest threads and a metrics scraper.
+ *
+ * <p>The split between writer and reader threads is set by {@link StatisticsBenchmarkRunner} through JMH thread
+ * groups, so the same benchmark covers write-heavy, balanced and read-heavy mixes. Readers take a full
+ * {@link Statistics#snapshot()}, which is what an exporter does on every scrape.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Group)
+public class MixedWorkloadBenchmark {
+
+    /**
+     * Fully qualified class name of the provider, as registered in {@code META-INF/services}.
+     * {@link StatisticsBenchmarkRunner} replaces the default with every discovered provider.
+     */
+    @Param("in.shashwattiwari.statistics.LockBasedThreadSafeStatistics")
+    private String provider;
+
+    private Statistics statistics;
+
+    @State(Scope.Thread)
+    public static class Values {
+        private int next;
+
+        int next() {
+            next = next * 1_103_515_245 + 12_345;
+            return next >>> 16;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        statistics = Providers.load(provider);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Providers.close(statistics);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void write(Values values) {
+        statistics.event(values.next());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public StatisticsSnapshot read() {
+        return statistics.snapshot();
+    }
+}
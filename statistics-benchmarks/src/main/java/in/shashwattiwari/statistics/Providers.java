@@ -0,0 +1,42 @@
+package in.shashwattiwari.statistics;
+
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Discovers {@link Statistics} providers the same way {@code StatisticsClient} does, through {@link ServiceLoader}.
+ */
+final class Providers {
+
+    private Providers() {
+    }
+
+    /**
+     * Class names of all providers registered in {@code META-INF/services}.
+     */
+    static List<String> names() {
+        return ServiceLoader.load(Statistics.class).stream()
+                .map(provider -> provider.type().getName())
+                .toList();
+    }
+
+    /**
+     * A new instance of the provider registered under {@code name}.
+     */
+    static Statistics load(String name) {
+        return ServiceLoader.load(Statistics.class).stream()
+                .filter(provider -> provider.type().getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No Statistics provider registered as " + name))
+                .get();
+    }
+
+    /**
+     * Releases providers that hold resources outside the heap, such as off-heap memory or a mapped file.
+     */
+    static void close(Statistics statistics) throws Exception {
+        if (statistics instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
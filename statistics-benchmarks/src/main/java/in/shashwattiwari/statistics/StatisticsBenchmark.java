@@ -0,0 +1,100 @@
+package in.shashwattiwari.statistics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every {@link Statistics} provider in isolation: {@code event(int)} throughput and latency, and the
+ * latency of the getters.
+ *
+ * <p>The thread count is not fixed here; {@link StatisticsBenchmarkRunner} repeats the benchmark at 1, 2, 4, ... N
+ * threads, all sharing the same provider instance.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class StatisticsBenchmark {
+
+    /**
+     * Fully qualified class name of the provider, as registered in {@code META-INF/services}.
+     * {@link StatisticsBenchmarkRunner} replaces the default with every discovered provider.
+     */
+    @Param("in.shashwattiwari.statistics.LockBasedThreadSafeStatistics")
+    private String provider;
+
+    private Statistics statistics;
+
+    @State(Scope.Thread)
+    public static class Values {
+        // cheap per-thread sequence, so the measured cost is the provider and not a random generator
+        private int next;
+
+        int next() {
+            next = next * 1_103_515_245 + 12_345;
+            return next >>> 16;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        statistics = Providers.load(provider);
+        for (int i = 0; i < 1_000; i++) {
+            statistics.event(i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Providers.close(statistics);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public void event(Values values) {
+        statistics.event(values.next());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public int min() {
+        return statistics.min();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public int max() {
+        return statistics.max();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public float mean() {
+        return statistics.mean();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public float variance() {
+        return statistics.variance();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public StatisticsSnapshot snapshot() {
+        return statistics.snapshot();
+    }
+}
@@ -0,0 +1,111 @@
+package in.shashwattiwari.statistics;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the provider benchmarks across thread counts and read/write mixes and writes one JSON report.
+ *
+ * <p>Providers are discovered through {@link java.util.ServiceLoader}, so a new module only has to be on the class
+ * path of this module to be benchmarked. Configuration is read from system properties:
+ * <ul>
+ *   <li>{@code threads}: comma separated thread counts, defaults to 1, 2, 4, ... up to the number of processors.</li>
+ *   <li>{@code ratios}: comma separated {@code writers:readers} mixes for {@link MixedWorkloadBenchmark},
+ *   defaults to {@code 9:1,1:1,1:9}. They are scaled to each thread count.</li>
+ *   <li>{@code result}: the JSON report, defaults to {@code statistics-benchmarks.json}.</li>
+ * </ul>
+ *
+ * <pre>
+ *     java -Dthreads=1,4,16 -jar statistics-benchmarks/target/benchmarks.jar
+ * </pre>
+ *
+ * <p>Regular JMH options such as {@code -wi}, {@code -i} or {@code -f} apply to the whole sweep. When a benchmark
+ * is named on the command line, e.g. {@code -jar benchmarks.jar BatchAggregatorBenchmark}, or {@code -h}/{@code -l}
+ * is given, the arguments are handed to the stock JMH launcher instead.
+ */
+public final class StatisticsBenchmarkRunner {
+
+    private StatisticsBenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (!commandLine.getIncludes().isEmpty() || commandLine.shouldHelp() || commandLine.shouldList()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        String[] providers = Providers.names().toArray(String[]::new);
+        int[] threadCounts = parseThreads(System.getProperty("threads", defaultThreads()));
+        List<int[]> ratios = parseRatios(System.getProperty("ratios", "9:1,1:1,1:9"));
+        String result = System.getProperty("result", "statistics-benchmarks.json");
+
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : threadCounts) {
+            results.addAll(new Runner(options(commandLine, providers)
+                    .include(StatisticsBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run());
+
+            if (threads < 2) continue;
+            for (int[] ratio : ratios) {
+                int writers = Math.clamp(Math.round((float) threads * ratio[0] / (ratio[0] + ratio[1])), 1, threads - 1);
+                results.addAll(new Runner(options(commandLine, providers)
+                        .include(MixedWorkloadBenchmark.class.getSimpleName())
+                        .threadGroups(writers, threads - writers)
+                        .build()).run());
+            }
+        }
+
+        try (PrintStream out = new PrintStream(result)) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("Results written to " + result);
+    }
+
+    private static ChainedOptionsBuilder options(CommandLineOptions commandLine, String[] providers) {
+        return new OptionsBuilder()
+                .parent(commandLine)
+                .param("provider", providers)
+                .shouldFailOnError(true);
+    }
+
+    private static String defaultThreads() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<String> counts = new ArrayList<>();
+        for (int threads = 1; threads < processors; threads <<= 1) {
+            counts.add(String.valueOf(threads));
+        }
+        counts.add(String.valueOf(processors));
+        return String.join(",", counts);
+    }
+
+    private static int[] parseThreads(String threads) {
+        return Arrays.stream(threads.split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    private static List<int[]> parseRatios(String ratios) {
+        List<int[]> parsed = new ArrayList<>();
+        for (String ratio : ratios.split(",")) {
+            String[] parts = ratio.trim().split(":");
+            parsed.add(new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])});
+        }
+        return parsed;
+    }
+}
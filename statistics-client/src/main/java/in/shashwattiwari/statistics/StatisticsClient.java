@@ -40,8 +40,7 @@ public class StatisticsClient {
             System.out.println("Max: " + statistics.mean());
             System.out.println("Max: " + statistics.variance());
 
-            // benchmarking
-            // ToDo use JMH for micro benchmarking
+            // rough wall clock only, see statistics-benchmarks for JMH measurements
             String msg = "Implementation %s, took %s ms";
             System.out.println(String.format(msg ,statistics.getClass().getName(), System.currentTimeMillis() - startMillis));
         }
@@ -0,0 +1,394 @@
+package in.shashwattiwari.statistics;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@code DDSketchThreadSafeStatistics} provides a thread-safe implementation of the {@link QuantileStatistics}
+ * interface backed by a DDSketch.
+ *
+ * <p>A positive value {@code v} is counted in bucket {@code ceil(log(v) / log(gamma))}, with
+ * {@code gamma = (1 + alpha) / (1 - alpha)} for a relative accuracy {@code alpha}. Every value in a bucket is
+ * within a factor {@code gamma} of the others, so answering a quantile with the bucket's representative value
+ * is off by at most {@code alpha} relative to the exact quantile. Negative values are counted by magnitude in a
+ * second store, zeros in a counter of their own.
+ *
+ * <p>Because the bucket of a value only depends on {@code alpha}, two sketches with the same accuracy merge
+ * exactly by adding their bucket counts: the merged sketch is identical to one that recorded all events.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>Each store is dense but allocated in chunks on demand. A chunk is an {@link AtomicLongArray} installed
+ *   with a compare-and-set, so neither recording nor growing ever takes a lock.</li>
+ *   <li>Recording is one {@code getAndAdd} on the bucket plus the allocation-free moments update of
+ *   {@link VarHandleThreadSafeStatistics}. Only the first event that touches a chunk allocates.</li>
+ *   <li>{@link #toByteArray()} writes a compact, versioned encoding: the moments as a {@link StatisticsCodec}
+ *   record, then variable-length integers for only the non-empty buckets, as index deltas.
+ *   {@link #fromByteArray(byte[])} restores an equivalent sketch in another process.</li>
+ *   <li>A {@link StatisticsSnapshot} only carries moments: merging one updates min, max, mean and variance, but
+ *   its events are only reflected in quantiles when they all have the same value.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     DDSketchThreadSafeStatistics stats = new DDSketchThreadSafeStatistics(0.01);
+ *     stats.event(5);
+ *     stats.event(10);
+ *     System.out.println("p99: " + stats.quantile(0.99));
+ *     byte[] wire = stats.toByteArray();
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * With the default accuracy of 1% the whole {@code int} range needs about 1,100 buckets per sign, in chunks of
+ * {@value #CHUNK_SIZE}. Quantile queries are linear in the number of buckets.
+ *
+ * <h2>References:</h2>
+ * <ul>
+ *   <li>C. Masson, J. E. Rim, H. K. Lee, DDSketch: A Fast and Fully-Mergeable Quantile Sketch with
+ *   Relative-Error Guarantees: <a href="https://arxiv.org/abs/1908.10693">arxiv.org</a>.</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class DDSketchThreadSafeStatistics implements QuantileStatistics {
+
+    static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    static final int CHUNK_SIZE = 64;
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int MAX_VAR_INT_SIZE = 5;
+    private static final int MAX_VAR_LONG_SIZE = 10;
+
+    /**
+     * Dense bucket counts, allocated chunk by chunk on first use.
+     */
+    private static final class Store {
+
+        private final AtomicReferenceArray<AtomicLongArray> chunks;
+
+        Store(int buckets) {
+            chunks = new AtomicReferenceArray<>((buckets + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        }
+
+        void add(int index, long count) {
+            int c = index / CHUNK_SIZE;
+            AtomicLongArray chunk = chunks.get(c);
+            if (chunk == null) {
+                AtomicLongArray created = new AtomicLongArray(CHUNK_SIZE);
+                AtomicLongArray witness = chunks.compareAndExchange(c, null, created);
+                chunk = witness == null ? created : witness;
+            }
+            chunk.getAndAdd(index % CHUNK_SIZE, count);
+        }
+
+        long get(int index) {
+            AtomicLongArray chunk = chunks.get(index / CHUNK_SIZE);
+            return chunk == null ? 0 : chunk.get(index % CHUNK_SIZE);
+        }
+
+        int length() {
+            return chunks.length() * CHUNK_SIZE;
+        }
+
+        int nonEmpty() {
+            int nonEmpty = 0;
+            for (int i = 0; i < length(); i++) {
+                if (get(i) != 0) nonEmpty++;
+            }
+            return nonEmpty;
+        }
+
+        long total() {
+            long total = 0;
+            for (int c = 0; c < chunks.length(); c++) {
+                AtomicLongArray chunk = chunks.get(c);
+                if (chunk != null) {
+                    for (int i = 0; i < CHUNK_SIZE; i++) {
+                        total += chunk.get(i);
+                    }
+                }
+            }
+            return total;
+        }
+
+        void addAll(Store other) {
+            for (int c = 0; c < other.chunks.length(); c++) {
+                AtomicLongArray chunk = other.chunks.get(c);
+                if (chunk != null) {
+                    for (int i = 0; i < CHUNK_SIZE; i++) {
+                        long count = chunk.get(i);
+                        if (count != 0) {
+                            add(c * CHUNK_SIZE + i, count);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double multiplier;
+
+    private final VarHandleThreadSafeStatistics moments = new VarHandleThreadSafeStatistics();
+    private final AtomicLong zeros = new AtomicLong();
+    // buckets of -n for negative events
+    private final Store negative;
+    private final Store positive;
+
+    public DDSketchThreadSafeStatistics() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * @param relativeAccuracy maximum relative error of a quantile, strictly between 0 and 1
+     */
+    public DDSketchThreadSafeStatistics(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.multiplier = 1 / Math.log(gamma);
+        // the largest magnitude is 2^31, for Integer.MIN_VALUE
+        int buckets = indexOf(1L << 31) + 1;
+        this.negative = new Store(buckets);
+        this.positive = new Store(buckets);
+    }
+
+    @Override
+    public void event(int n) {
+        moments.event(n);
+        record(n, 1);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        moments.event(values, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            record(values[i], 1);
+        }
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        moments.merge(snapshot);
+        if (snapshot.min() == snapshot.max()) {
+            record(snapshot.min(), snapshot.count());
+        }
+    }
+
+    /**
+     * Adds the bucket counts of {@code other} if it is a sketch of the same accuracy, otherwise falls back to
+     * merging its snapshot.
+     */
+    @Override
+    public void merge(Statistics other) {
+        if (!(other instanceof DDSketchThreadSafeStatistics sketch) || sketch.relativeAccuracy != relativeAccuracy) {
+            QuantileStatistics.super.merge(other);
+            return;
+        }
+        moments.merge(sketch.snapshot());
+        zeros.addAndGet(sketch.zeros.get());
+        negative.addAll(sketch.negative);
+        positive.addAll(sketch.positive);
+    }
+
+    @Override
+    public int min() {
+        return moments.min();
+    }
+
+    @Override
+    public int max() {
+        return moments.max();
+    }
+
+    @Override
+    public float mean() {
+        return moments.mean();
+    }
+
+    @Override
+    public float variance() {
+        return moments.variance();
+    }
+
+    @Override
+    public StatisticsSnapshot snapshot() {
+        return moments.snapshot();
+    }
+
+    /**
+     * Walks the buckets from the most negative to the most positive up to rank {@code q * (count - 1)} and
+     * returns that bucket's representative value, clamped to the observed minimum and maximum.
+     */
+    @Override
+    public double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("q must be between 0 and 1: " + q);
+        }
+        long total = negative.total() + zeros.get() + positive.total();
+        if (total == 0) return 0;
+
+        StatisticsSnapshot snapshot = moments.snapshot();
+        double rank = q * (total - 1);
+        long seen = 0;
+        for (int i = negative.length() - 1; i >= 0; i--) {
+            seen += negative.get(i);
+            if (seen > rank) {
+                return clamp(-valueOf(i), snapshot);
+            }
+        }
+        seen += zeros.get();
+        if (seen > rank) {
+            return clamp(0, snapshot);
+        }
+        for (int i = 0; i < positive.length(); i++) {
+            seen += positive.get(i);
+            if (seen > rank) {
+                return clamp(valueOf(i), snapshot);
+            }
+        }
+        // only reached if buckets were read while being written
+        return snapshot.max();
+    }
+
+    /**
+     * Counts the events whose bucket's representative value is at most {@code x}. Exact below the minimum and
+     * from the maximum on.
+     */
+    @Override
+    public double cdf(double x) {
+        long total = 0;
+        long below = 0;
+        for (int i = 0; i < positive.length(); i++) {
+            long count = negative.get(i);
+            total += count;
+            if (-valueOf(i) <= x) {
+                below += count;
+            }
+            count = positive.get(i);
+            total += count;
+            if (valueOf(i) <= x) {
+                below += count;
+            }
+        }
+        long zeroCount = zeros.get();
+        total += zeroCount;
+        if (x >= 0) {
+            below += zeroCount;
+        }
+        if (total == 0) return 0;
+
+        StatisticsSnapshot snapshot = moments.snapshot();
+        if (x < snapshot.min()) return 0;
+        if (x >= snapshot.max()) return 1;
+        return (double) below / total;
+    }
+
+    /**
+     * Encodes the accuracy, the moments and the non-empty buckets of this sketch. Buckets written concurrently
+     * may or may not be included.
+     */
+    public byte[] toByteArray() {
+        int negativeBuckets = negative.nonEmpty();
+        int positiveBuckets = positive.nonEmpty();
+        ByteBuffer out = ByteBuffer.allocate(1 + Double.BYTES + StatisticsCodec.MAX_ENCODED_SIZE + MAX_VAR_LONG_SIZE
+                + storeSizeBound(negativeBuckets) + storeSizeBound(positiveBuckets));
+        out.put(FORMAT_VERSION);
+        out.putDouble(relativeAccuracy);
+        StatisticsCodec.encode(moments.snapshot(), out);
+        StatisticsCodec.putVarLong(out, zeros.get());
+        writeStore(out, negative, negativeBuckets);
+        writeStore(out, positive, positiveBuckets);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Decodes a sketch written by {@link #toByteArray()}.
+     *
+     * @throws IllegalArgumentException if {@code bytes} is not a sketch of a supported format version
+     */
+    public static DDSketchThreadSafeStatistics fromByteArray(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            byte version = in.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch format version: " + version);
+            }
+            DDSketchThreadSafeStatistics sketch =
+                    new DDSketchThreadSafeStatistics(in.getDouble());
+
+            sketch.moments.merge(StatisticsCodec.decode(in));
+            sketch.zeros.set(StatisticsCodec.getVarLong(in));
+            readStore(in, sketch.negative);
+            readStore(in, sketch.positive);
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("Trailing bytes after sketch: " + in.remaining());
+            }
+            return sketch;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ArithmeticException e) {
+            throw new IllegalArgumentException("Truncated or corrupt sketch", e);
+        }
+    }
+
+    private void record(int n, long count) {
+        if (n > 0) {
+            positive.add(indexOf(n), count);
+        } else if (n < 0) {
+            negative.add(indexOf(-(long) n), count);
+        } else {
+            zeros.addAndGet(count);
+        }
+    }
+
+    private int indexOf(long magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) * multiplier);
+    }
+
+    // Lies within a factor 1 + relativeAccuracy of every magnitude of bucket index
+    private double valueOf(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private static double clamp(double value, StatisticsSnapshot snapshot) {
+        return Math.min(Math.max(value, snapshot.min()), snapshot.max());
+    }
+
+    // bytes taken by a bucket count, the index deltas of the non-empty buckets and their counts
+    private static int storeSizeBound(int nonEmpty) {
+        return MAX_VAR_LONG_SIZE + nonEmpty * (MAX_VAR_INT_SIZE + MAX_VAR_LONG_SIZE);
+    }
+
+    // Writes the first nonEmpty non-empty buckets, a count taken before any bucket filled up concurrently
+    private static void writeStore(ByteBuffer out, Store store, int nonEmpty) {
+        StatisticsCodec.putVarLong(out, nonEmpty);
+        int previous = 0;
+        for (int i = 0; i < store.length() && nonEmpty > 0; i++) {
+            long count = store.get(i);
+            if (count != 0) {
+                StatisticsCodec.putVarLong(out, i - previous);
+                StatisticsCodec.putVarLong(out, count);
+                previous = i;
+                nonEmpty--;
+            }
+        }
+    }
+
+    private static void readStore(ByteBuffer in, Store store) {
+        long nonEmpty = StatisticsCodec.getVarLong(in);
+        int index = 0;
+        for (long i = 0; i < nonEmpty; i++) {
+            index = Math.addExact(index, Math.toIntExact(StatisticsCodec.getVarLong(in)));
+            store.add(index, StatisticsCodec.getVarLong(in));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DDSketchThreadSafeStatisticsTest extends StatisticsTestBase {
+    @Override
+    protected Statistics createStatistics() {
+        return new DDSketchThreadSafeStatistics();
+    }
+
+    @Test
+    public void testQuantilesWithinRelativeAccuracy() {
+        DDSketchThreadSafeStatistics statistics = new DDSketchThreadSafeStatistics();
+        assertEquals(0, statistics.quantile(0.5), "Quantiles should be 0 when no events are recorded.");
+        for (int i = -1_000; i <= 100_000; i++) {
+            statistics.event(i);
+        }
+        double accuracy = DDSketchThreadSafeStatistics.DEFAULT_RELATIVE_ACCURACY;
+
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            double expected = -1_000 + q * 101_000;
+            assertEquals(expected, statistics.quantile(q), expected * accuracy, "Quantile " + q + " is incorrect.");
+        }
+        assertEquals(-500, statistics.quantile(500 / 101_000.0), 500 * accuracy, "Negative quantile is incorrect.");
+        assertEquals(0, statistics.quantile(1_000 / 101_000.0), "Zero should be exact.");
+        assertEquals(-1_000, statistics.quantile(0), 1_000 * accuracy, "p0 is incorrect.");
+        assertEquals(100_000, statistics.quantile(1), 100_000 * accuracy, "p100 is incorrect.");
+        assertEquals(0.5, statistics.cdf(49_500), 0.01, "cdf is incorrect.");
+        assertThrows(IllegalArgumentException.class, () -> statistics.quantile(2));
+    }
+
+    @Test
+    public void testMergeIsExact() {
+        DDSketchThreadSafeStatistics whole = new DDSketchThreadSafeStatistics();
+        DDSketchThreadSafeStatistics merged = new DDSketchThreadSafeStatistics();
+        DDSketchThreadSafeStatistics[] shards = new DDSketchThreadSafeStatistics[3];
+        for (int s = 0; s < shards.length; s++) {
+            shards[s] = new DDSketchThreadSafeStatistics();
+        }
+        for (int i = -5_000; i < 50_000; i += 7) {
+            whole.event(i);
+            shards[Math.floorMod(i, shards.length)].event(i);
+        }
+        for (DDSketchThreadSafeStatistics shard : shards) {
+            merged.merge(shard);
+        }
+
+        assertArrayEquals(whole.toByteArray(), merged.toByteArray(), "Merged sketch should equal the whole sketch.");
+    }
+
+    @Test
+    public void testSerializationRoundTrip() {
+        DDSketchThreadSafeStatistics statistics = new DDSketchThreadSafeStatistics(0.02);
+        statistics.event(new int[]{Integer.MIN_VALUE, -3, 0, 0, 7, 1_000, Integer.MAX_VALUE}, 0, 7);
+        byte[] bytes = statistics.toByteArray();
+
+        DDSketchThreadSafeStatistics copy = DDSketchThreadSafeStatistics.fromByteArray(bytes);
+        assertEquals(statistics.snapshot(), copy.snapshot(), "Moments should survive the round trip.");
+        for (double q = 0; q <= 1; q += 0.125) {
+            assertEquals(statistics.quantile(q), copy.quantile(q), "Quantile " + q + " should survive the round trip.");
+        }
+        assertArrayEquals(bytes, copy.toByteArray(), "Encoding should be stable.");
+        byte[] empty = new DDSketchThreadSafeStatistics().toByteArray();
+        assertArrayEquals(empty, DDSketchThreadSafeStatistics.fromByteArray(empty).toByteArray(),
+                "Empty sketches should round trip.");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> DDSketchThreadSafeStatistics.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1)));
+        bytes[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> DDSketchThreadSafeStatistics.fromByteArray(bytes));
+    }
+
+    @Test
+    public void testOversizedBucketDeltaIsRejected() {
+        byte[] empty = new DDSketchThreadSafeStatistics().toByteArray();
+        // replace the empty positive store by one bucket whose index delta does not fit in an int
+        ByteBuffer corrupt = ByteBuffer.allocate(empty.length + 3 * 10).put(empty, 0, empty.length - 1);
+        StatisticsCodec.putVarLong(corrupt, 1);
+        StatisticsCodec.putVarLong(corrupt, 1L << 32);
+        StatisticsCodec.putVarLong(corrupt, 1);
+        byte[] bytes = Arrays.copyOf(corrupt.array(), corrupt.position());
+        assertThrows(IllegalArgumentException.class, () -> DDSketchThreadSafeStatistics.fromByteArray(bytes));
+    }
+}
@@ -0,0 +1,251 @@
+package in.shashwattiwari.statistics;
+
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * {@code DecayingThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface
+ * whose mean and variance follow recent behaviour: the weight of an event halves every half-life.
+ *
+ * <p>The instance keeps an exponentially weighted count, mean and sum of squared deviations, updated with West's
+ * weighted form of Welford's algorithm like {@code DoubleThreadSafeStatistics}. This avoids the cancellation of
+ * {@code weightedSumOfSquares / weight - mean^2} when the variance is small compared to the mean. Decay is applied
+ * lazily: a write first multiplies the weight and the squared deviations by {@code 2^(-elapsed / halfLife)} for
+ * the time elapsed since the previous write, then adds the new event with weight 1. The mean is a weighted
+ * average, which a common decay factor does not change. There is no background ticker, so an idle instance costs
+ * nothing, and the memory used is constant.
+ *
+ * <p>{@code mean()} and {@code variance()} are independent of a common decay factor, so reads never have to
+ * decay, or even look at the clock.
+ *
+ * <h2>Decayed and Cumulative Views:</h2>
+ * Only {@code mean()} and {@code variance()} are decayed. {@code min()}, {@code max()} and {@link #snapshot()}
+ * describe every event consumed, because a snapshot carries integer moments that must stay exactly mergeable
+ * with the other providers. Unlike in other providers, {@code mean()} and {@code variance()} therefore generally
+ * differ from {@code snapshot().mean()} and {@code snapshot().variance()}, which are the undecayed values.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>State is guarded by a {@link StampedLock}. Reads use optimistic reads as in
+ *   {@code StampedLockThreadSafeStatistics}, writers take the write lock.</li>
+ *   <li>The clock is a pluggable {@link InstantSource}. A clock that goes backwards does not decay and does
+ *   not move the reference time back.</li>
+ *   <li>A merged snapshot is treated as if all of its events were consumed at the time of the merge.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     Statistics stats = new DecayingThreadSafeStatistics(Duration.ofMinutes(5), InstantSource.system());
+ *     stats.event(5);
+ *     stats.event(10);
+ *     System.out.println("Recent mean: " + stats.mean());
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * A write costs one {@link Math#exp(double)} when time has moved since the previous write. After an idle period
+ * of many half-lives the old weights underflow to zero, and the next event alone determines the statistics.
+ *
+ * <h2>References:</h2>
+ * <ul>
+ *   <li>D. H. D. West, Updating Mean and Variance Estimates: An Improved Method, Communications of the ACM 22
+ *   (1979).</li>
+ *   <li>T. F. Chan, G. H. Golub, R. J. LeVeque, Updating Formulae and a Pairwise Algorithm for Computing Sample
+ *   Variances (1979).</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class DecayingThreadSafeStatistics implements Statistics {
+
+    static final Duration DEFAULT_HALF_LIFE = Duration.ofMinutes(1);
+
+    private final double decayPerMilli;
+    private final InstantSource clock;
+    private final StampedLock lock = new StampedLock();
+
+    // decayed moments, as of lastUpdate
+    private double weight;
+    private double weightedMean;
+    private double squaredDeviations;
+    private long lastUpdate;
+
+    // moments of every event consumed
+    private long count;
+    private long sum;
+    private long sumOfSquaresHigh;
+    private long sumOfSquares;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    /**
+     * Decays with a half-life of one minute on the system clock.
+     */
+    public DecayingThreadSafeStatistics() {
+        this(DEFAULT_HALF_LIFE, InstantSource.system());
+    }
+
+    /**
+     * @param halfLife time after which the weight of an event has halved, at least one millisecond
+     * @param clock    source of the current time
+     */
+    public DecayingThreadSafeStatistics(Duration halfLife, InstantSource clock) {
+        if (halfLife.toMillis() < 1) {
+            throw new IllegalArgumentException("halfLife must be at least one millisecond: " + halfLife);
+        }
+        this.decayPerMilli = Math.log(2) / halfLife.toMillis();
+        this.clock = clock;
+        this.lastUpdate = clock.millis();
+    }
+
+    @Override
+    public void event(int n) {
+        long now = clock.millis();
+        long stamp = lock.writeLock();
+        try {
+            decayTo(now);
+            weight += 1;
+            double delta = n - weightedMean;
+            weightedMean += delta / weight;
+            squaredDeviations += delta * (n - weightedMean);
+
+            count++;
+            sum += n;
+            long square = (long) n * n;
+            sumOfSquaresHigh += Int128.carry(sumOfSquares, square);
+            sumOfSquares += square;
+            min = Math.min(min, n);
+            max = Math.max(max, n);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        // the whole batch shares one timestamp, so it can be aggregated outside the lock
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        double batchMean = (double) snapshot.sum() / snapshot.count();
+        double batchSquaredDeviations = StatisticsSnapshot.sumOfSquaredDeviations(snapshot.count(), snapshot.sum(),
+                snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares());
+        long now = clock.millis();
+        long stamp = lock.writeLock();
+        try {
+            decayTo(now);
+            double combined = weight + snapshot.count();
+            double delta = batchMean - weightedMean;
+            weightedMean += delta * snapshot.count() / combined;
+            squaredDeviations += batchSquaredDeviations + delta * delta * weight / combined * snapshot.count();
+            weight = combined;
+
+            count += snapshot.count();
+            sum += snapshot.sum();
+            sumOfSquaresHigh += snapshot.sumOfSquaresHigh() + Int128.carry(sumOfSquares, snapshot.sumOfSquares());
+            sumOfSquares += snapshot.sumOfSquares();
+            min = Math.min(min, snapshot.min());
+            max = Math.max(max, snapshot.max());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    /**
+     * Exponentially weighted mean of the events consumed.
+     */
+    @Override
+    public float mean() {
+        long stamp = lock.tryOptimisticRead();
+        double weight = this.weight;
+        double weightedMean = this.weightedMean;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                weight = this.weight;
+                weightedMean = this.weightedMean;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return weight == 0 ? 0 : (float) weightedMean;
+    }
+
+    /**
+     * Exponentially weighted variance of the events consumed.
+     */
+    @Override
+    public float variance() {
+        long stamp = lock.tryOptimisticRead();
+        double weight = this.weight;
+        double squaredDeviations = this.squaredDeviations;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                weight = this.weight;
+                squaredDeviations = this.squaredDeviations;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (weight == 0) return 0;
+
+        // rounding can push a near-zero variance slightly negative
+        return (float) Math.max(0, squaredDeviations / weight);
+    }
+
+    /**
+     * Undecayed moments of every event consumed. Its {@code mean()} and {@code variance()} are the cumulative ones,
+     * not the decayed values of {@link #mean()} and {@link #variance()}.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        long sum = this.sum;
+        long sumOfSquaresHigh = this.sumOfSquaresHigh;
+        long sumOfSquares = this.sumOfSquares;
+        int min = this.min;
+        int max = this.max;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                sum = this.sum;
+                sumOfSquaresHigh = this.sumOfSquaresHigh;
+                sumOfSquares = this.sumOfSquares;
+                min = this.min;
+                max = this.max;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return new StatisticsSnapshot(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+    }
+
+    // Must be called with the write lock held
+    private void decayTo(long now) {
+        long elapsed = now - lastUpdate;
+        if (elapsed <= 0) return;
+
+        double factor = Math.exp(-decayPerMilli * elapsed);
+        weight *= factor;
+        squaredDeviations *= factor;
+        lastUpdate = now;
+    }
+}
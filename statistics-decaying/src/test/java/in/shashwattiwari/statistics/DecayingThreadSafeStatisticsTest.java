@@ -0,0 +1,58 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DecayingThreadSafeStatisticsTest extends StatisticsTestBase {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    // the clock only moves when a test moves it, so the shared tests see no decay
+    @Override
+    protected Statistics createStatistics() {
+        return new DecayingThreadSafeStatistics(Duration.ofSeconds(10), () -> Instant.ofEpochMilli(now.get()));
+    }
+
+    @Test
+    public void testOldEventsDecay() {
+        Statistics statistics = createStatistics();
+        statistics.event(0);
+
+        now.addAndGet(10_000);
+        statistics.event(30);
+        // weights 1/2 and 1
+        assertEquals(20, statistics.mean(), 0.001, "Mean should weigh the older event by half.");
+        assertEquals(200, statistics.variance(), 0.001, "Variance should weigh the older event by half.");
+        assertEquals(15, statistics.snapshot().mean(), 0.001, "Snapshot mean should not decay.");
+        assertEquals(225, statistics.snapshot().variance(), 0.001, "Snapshot variance should not decay.");
+
+        now.addAndGet(300_000);
+        assertEquals(20, statistics.mean(), 0.001, "Idle time alone should not change the statistics.");
+
+        statistics.event(new int[]{50, 50}, 0, 2);
+        assertEquals(50, statistics.mean(), 0.01, "Events older than many half-lives should be negligible.");
+        assertEquals(0, statistics.variance(), 0.1, "Events older than many half-lives should be negligible.");
+
+        assertEquals(0, statistics.min(), "Minimum value should not decay.");
+        assertEquals(4, statistics.snapshot().count(), "Snapshots should not decay.");
+    }
+
+    @Test
+    public void testVarianceOfLargeCloseValues() {
+        Statistics statistics = createStatistics();
+        statistics.event(1_000_000_000);
+        statistics.event(1_000_000_002);
+        assertEquals(1, statistics.variance(), 0.001, "Variance should not cancel out next to a large mean.");
+
+        now.addAndGet(10_000);
+        statistics.event(new int[]{1_000_000_004, 1_000_000_004}, 0, 2);
+        // weights 1/2, 1/2, 1 and 1 around a mean of 1_000_000_003
+        assertEquals(1_000_000_003, statistics.mean(), 100, "Mean should weigh the older events by half.");
+        assertEquals(7 / 3.0, statistics.variance(), 0.001, "Variance should not cancel out next to a large mean.");
+    }
+}
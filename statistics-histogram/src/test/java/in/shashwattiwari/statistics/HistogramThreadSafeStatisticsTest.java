@@ -0,0 +1,71 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HistogramThreadSafeStatisticsTest extends StatisticsTestBase {
+    @Override
+    protected Statistics createStatistics() {
+        return new HistogramThreadSafeStatistics();
+    }
+
+    @Test
+    public void testQuantilesWithinRelativeError() {
+        HistogramThreadSafeStatistics statistics = new HistogramThreadSafeStatistics();
+        for (int i = 1; i <= 100_000; i++) {
+            statistics.event(i);
+        }
+        double error = 1.0 / (1 << (HistogramThreadSafeStatistics.DEFAULT_PRECISION_BITS + 1));
+
+        assertEquals(50_000, statistics.quantile(0.5), 50_000 * error, "p50 is outside the error bound.");
+        assertEquals(99_000, statistics.quantile(0.99), 99_000 * error, "p99 is outside the error bound.");
+        assertEquals(99_900, statistics.quantile(0.999), 99_900 * error, "p999 is outside the error bound.");
+        assertEquals(1, statistics.quantile(0), "p0 should be the minimum.");
+        assertEquals(100_000, statistics.quantile(1), "p100 should be the maximum.");
+        assertEquals(0.25, statistics.cdf(25_000), error, "cdf is outside the error bound.");
+        assertEquals(0, statistics.cdf(0), "cdf below the minimum should be 0.");
+        assertEquals(1, statistics.cdf(100_000), "cdf at the maximum should be 1.");
+    }
+
+    @Test
+    public void testQuantilesOfSmallAndNegativeValuesAreExact() {
+        QuantileStatistics statistics = new HistogramThreadSafeStatistics();
+        assertEquals(0, statistics.quantile(0.5), "Quantiles should be 0 when no events are recorded.");
+
+        statistics.event(new int[]{-30, -20, -10, 10, 20}, 0, 5);
+        assertEquals(-30, statistics.quantile(0.1), "Quantile is incorrect.");
+        assertEquals(-10, statistics.quantile(0.5), "Quantile is incorrect.");
+        assertEquals(20, statistics.quantile(0.9), "Quantile is incorrect.");
+        assertEquals(0.6, statistics.cdf(-5), 0.001, "cdf is incorrect.");
+
+        statistics.event(Integer.MIN_VALUE);
+        statistics.event(Integer.MAX_VALUE);
+        double error = 1.0 / (1 << (HistogramThreadSafeStatistics.DEFAULT_PRECISION_BITS + 1));
+        assertEquals(Integer.MIN_VALUE, statistics.quantile(0), -error * Integer.MIN_VALUE, "Extremes should be covered.");
+        assertEquals(Integer.MAX_VALUE, statistics.quantile(1), error * Integer.MAX_VALUE, "Extremes should be covered.");
+        assertThrows(IllegalArgumentException.class, () -> statistics.quantile(1.5));
+    }
+
+    @Test
+    public void testMergeKeepsDistribution() {
+        HistogramThreadSafeStatistics first = new HistogramThreadSafeStatistics();
+        HistogramThreadSafeStatistics second = new HistogramThreadSafeStatistics();
+        for (int i = 1; i <= 90; i++) {
+            first.event(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            second.event(1_000);
+        }
+
+        first.merge(second);
+        assertEquals(100, first.snapshot().count(), "Merged count should include both instances.");
+        assertEquals(50, first.quantile(0.5), 1, "Median should consider both instances.");
+        assertEquals(1_000, first.quantile(0.95), 1_000 / 256.0, "Tail should come from the merged instance.");
+
+        HistogramThreadSafeStatistics coarse = new HistogramThreadSafeStatistics(2);
+        coarse.merge(first);
+        assertEquals(first.snapshot(), coarse.snapshot(), "Different precisions should still merge moments.");
+    }
+}
@@ -0,0 +1,385 @@
+package in.shashwattiwari.statistics;
+
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code BoundedIngestStatistics} is an asynchronous front-end for any {@link Statistics} provider that puts a
+ * bounded queue between the recording threads and the provider.
+ *
+ * <p>{@link #event(int)} only enqueues the value; a single ingest thread takes everything queued in one go and
+ * records it in the provider with {@link Statistics#event(int[], int, int)}. The queue is a preallocated ring of
+ * {@code int}s, so memory stays bounded and nothing is boxed. When it is full, the {@link OverflowPolicy} decides
+ * between waiting and losing events, and {@link #dropped()} and {@link #sampled()} count what was lost, so the
+ * accuracy of the statistics under overload is observable.
+ *
+ * <p>Reads wait until every event enqueued before them has been recorded or dropped, then read the provider.
+ * Merged snapshots are handed to the ingest thread as well. They are folded into a single pending snapshot, so
+ * they never wait for room, and the ingest thread merges it into the provider after its next batch.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>One lock guards the queue, but it is only held to copy a value in or a batch out: the provider is called
+ *   outside of it, so a slow provider delays the ingest thread, not the recording threads.</li>
+ *   <li>Only {@link OverflowPolicy#BLOCK} makes recording threads wait; the other policies bound their latency to
+ *   one lock acquisition.</li>
+ *   <li>The provider is written by the ingest thread only, so it may even be a provider that is not thread-safe
+ *   for writes.</li>
+ *   <li>If the provider throws, the ingest thread stops and records the exception. Every later call, including
+ *   those already waiting, then throws an {@link IllegalStateException} caused by it, instead of hanging.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     try (BoundedIngestStatistics stats = new BoundedIngestStatistics(new HistogramThreadSafeStatistics(),
+ *             4096, BoundedIngestStatistics.OverflowPolicy.DROP_OLDEST)) {
+ *         stats.event(5);
+ *         System.out.println("Mean: " + stats.mean() + ", dropped: " + stats.dropped());
+ *     }
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * Recording costs an uncontended lock acquisition in the common case. Under sustained overload the lock becomes
+ * the bottleneck; the policies that lose events keep the time it is held constant.
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class BoundedIngestStatistics implements Statistics, AutoCloseable {
+
+    /**
+     * What {@link #event(int)} does when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Waits for room. Loses nothing, but recording threads are slowed down to the provider's pace.
+         */
+        BLOCK,
+        /**
+         * Drops the incoming event.
+         */
+        DROP_NEWEST,
+        /**
+         * Drops the oldest queued event to make room for the incoming one, favouring recent data.
+         */
+        DROP_OLDEST,
+        /**
+         * Once the queue is half full, admits only one event in {@code sampleRate} and counts the others as
+         * sampled out. Admitted events that find the queue full are dropped.
+         */
+        SAMPLE
+    }
+
+    static final int DEFAULT_SAMPLE_RATE = 10;
+
+    private final Statistics delegate;
+    private final OverflowPolicy policy;
+    private final int sampleRate;
+    private final Thread ingest;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition recorded = lock.newCondition();
+
+    // queued events have the sequences head until tail, each stored at sequence % queue.length
+    private final int[] queue;
+    private long head;
+    private long tail;
+    // the batch being recorded by the ingest thread, empty when both are equal
+    private long takenFrom;
+    private long takenTo;
+    // snapshots merged since the ingest thread last took them, and how many merge calls it has taken and recorded
+    private StatisticsSnapshot pendingMerged = StatisticsSnapshot.EMPTY;
+    private long merges;
+    private long mergesTaken;
+    private long mergesRecorded;
+
+    private long dropped;
+    private long sampled;
+    private long sampleCounter;
+    private boolean closing;
+    private RuntimeException failure;
+
+    /**
+     * Queues up to {@code capacity} events for {@code delegate}, sampling one in {@value #DEFAULT_SAMPLE_RATE}
+     * under the {@link OverflowPolicy#SAMPLE} policy.
+     */
+    public BoundedIngestStatistics(Statistics delegate, int capacity, OverflowPolicy policy) {
+        this(delegate, capacity, policy, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Queues up to {@code capacity} events for {@code delegate}, sampling one in {@code sampleRate} under the
+     * {@link OverflowPolicy#SAMPLE} policy.
+     */
+    public BoundedIngestStatistics(Statistics delegate, int capacity, OverflowPolicy policy, int sampleRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("Sample rate must be positive: " + sampleRate);
+        }
+        this.delegate = Objects.requireNonNull(delegate);
+        this.policy = Objects.requireNonNull(policy);
+        this.sampleRate = sampleRate;
+        this.queue = new int[capacity];
+        this.ingest = Thread.ofPlatform().name("statistics-ingest").daemon().start(this::run);
+    }
+
+    /**
+     * Enqueues {@code n}, applying the overflow policy if the queue is full.
+     *
+     * @throws IllegalStateException if this instance is closed or the provider failed
+     */
+    @Override
+    public void event(int n) {
+        lock.lock();
+        try {
+            offer(n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enqueues the values one by one, as {@link #event(int)} does, under a single lock acquisition.
+     */
+    @Override
+    public void event(int[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        lock.lock();
+        try {
+            for (int i = offset; i < offset + length; i++) {
+                offer(values[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands {@code snapshot} to the ingest thread. Never waits for room in the queue.
+     *
+     * @throws IllegalStateException if this instance is closed or the provider failed
+     */
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        lock.lock();
+        try {
+            checkOpen();
+            pendingMerged = pendingMerged.merge(snapshot);
+            merges++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Waits until every event enqueued and every snapshot merged before this call has been recorded or dropped,
+     * then reads the provider.
+     *
+     * @throws IllegalStateException if the provider failed
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        lock.lock();
+        try {
+            long target = tail;
+            long mergeTarget = merges;
+            while (failure == null && (head < target || (takenFrom != takenTo && takenFrom < target)
+                    || mergesRecorded < mergeTarget)) {
+                recorded.awaitUninterruptibly();
+            }
+            checkNotFailed();
+        } finally {
+            lock.unlock();
+        }
+        return delegate.snapshot();
+    }
+
+    /**
+     * Number of events lost because the queue was full.
+     */
+    public long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of events skipped by the {@link OverflowPolicy#SAMPLE} policy.
+     */
+    public long sampled() {
+        lock.lock();
+        try {
+            return sampled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the queued events and stops the ingest thread. Later events are rejected.
+     *
+     * @throws IllegalStateException if the provider failed
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closing = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (ingest.isAlive()) {
+            try {
+                ingest.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            checkNotFailed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void offer(int n) {
+        checkOpen();
+        if (policy == OverflowPolicy.SAMPLE && tail - head >= (queue.length + 1) / 2
+                && sampleCounter++ % sampleRate != 0) {
+            sampled++;
+            return;
+        }
+        if (tail - head == queue.length) {
+            switch (policy) {
+                case BLOCK -> {
+                    while (tail - head == queue.length && !closing && failure == null) {
+                        notFull.awaitUninterruptibly();
+                    }
+                    checkOpen();
+                }
+                case DROP_OLDEST -> {
+                    head++;
+                    dropped++;
+                    recorded.signalAll();
+                }
+                case DROP_NEWEST, SAMPLE -> {
+                    dropped++;
+                    return;
+                }
+            }
+        }
+        queue[(int) (tail % queue.length)] = n;
+        if (tail++ == head) {
+            notEmpty.signal();
+        }
+    }
+
+    private void run() {
+        int[] batch = new int[queue.length];
+        while (true) {
+            int length;
+            StatisticsSnapshot merged;
+            lock.lock();
+            try {
+                while (tail == head && mergesTaken == merges && !closing) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (tail == head && mergesTaken == merges) return;
+
+                length = (int) (tail - head);
+                int from = (int) (head % queue.length);
+                int first = Math.min(length, queue.length - from);
+                System.arraycopy(queue, from, batch, 0, first);
+                System.arraycopy(queue, 0, batch, first, length - first);
+                takenFrom = head;
+                takenTo = tail;
+                head = tail;
+                merged = pendingMerged;
+                pendingMerged = StatisticsSnapshot.EMPTY;
+                mergesTaken = merges;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (length > 0) {
+                    delegate.event(batch, 0, length);
+                }
+                if (merged.count() != 0) {
+                    delegate.merge(merged);
+                }
+            } catch (RuntimeException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    recorded.signalAll();
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                takenFrom = takenTo;
+                mergesRecorded = mergesTaken;
+                recorded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void checkOpen() {
+        checkNotFailed();
+        if (closing) {
+            throw new IllegalStateException("Ingest is closed");
+        }
+    }
+
+    private void checkNotFailed() {
+        if (failure != null) {
+            throw new IllegalStateException("Ingest failed", failure);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package in.shashwattiwari.statistics;
+
+import in.shashwattiwari.statistics.BoundedIngestStatistics.OverflowPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BoundedIngestStatisticsTest extends StatisticsTestBase {
+
+    private final List<BoundedIngestStatistics> opened = new ArrayList<>();
+
+    // lets a test fill the queue while the ingest thread is stuck recording the first event
+    private final CountDownLatch recording = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void closeAll() {
+        release.countDown();
+        opened.forEach(BoundedIngestStatistics::close);
+    }
+
+    @Override
+    protected Statistics createStatistics() {
+        return open(new VarHandleThreadSafeStatistics(), 64, OverflowPolicy.BLOCK, 1);
+    }
+
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        BoundedIngestStatistics statistics = overload(OverflowPolicy.DROP_NEWEST, 1);
+        assertEquals(6, statistics.dropped(), "Events beyond the capacity should be dropped.");
+        assertEquals(new StatisticsSnapshot(5, 10, 30, 0, 4), statistics.snapshot(),
+                "The oldest events should be kept.");
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        BoundedIngestStatistics statistics = overload(OverflowPolicy.DROP_OLDEST, 1);
+        assertEquals(6, statistics.dropped(), "Events beyond the capacity should be dropped.");
+        assertEquals(new StatisticsSnapshot(5, 34, 294, 0, 10), statistics.snapshot(),
+                "The newest events should be kept.");
+    }
+
+    @Test
+    public void testSample() throws InterruptedException {
+        BoundedIngestStatistics statistics = overload(OverflowPolicy.SAMPLE, 2);
+        assertEquals(4, statistics.sampled(), "Every other event should be sampled out once half full.");
+        assertEquals(2, statistics.dropped(), "Admitted events should be dropped when the queue is full.");
+        assertEquals(new StatisticsSnapshot(5, 11, 39, 0, 5), statistics.snapshot(), "Sampled events are incorrect.");
+    }
+
+    @Test
+    public void testCloseRecordsQueuedEvents() {
+        BoundedIngestStatistics statistics = open(new VarHandleThreadSafeStatistics(), 2, OverflowPolicy.BLOCK, 1);
+        for (int i = 1; i <= 100; i++) {
+            statistics.event(i);
+        }
+        statistics.close();
+        assertEquals(100, statistics.snapshot().count(), "Blocking ingest should not lose events.");
+        assertEquals(0, statistics.dropped(), "Blocking ingest should not drop events.");
+        assertThrows(IllegalStateException.class, () -> statistics.event(1));
+    }
+
+    @Test
+    public void testMergesAreRecordedByIngestThread() {
+        List<String> mergingThreads = new ArrayList<>();
+        Statistics delegate = new VarHandleThreadSafeStatistics() {
+            @Override
+            public void merge(StatisticsSnapshot snapshot) {
+                mergingThreads.add(Thread.currentThread().getName());
+                super.merge(snapshot);
+            }
+        };
+        BoundedIngestStatistics statistics = open(delegate, 4, OverflowPolicy.BLOCK, 1);
+        statistics.event(1);
+        statistics.merge(new StatisticsSnapshot(2, 5, 13, 2, 3));
+        statistics.merge(new StatisticsSnapshot(1, 4, 16, 4, 4));
+        assertEquals(new StatisticsSnapshot(4, 10, 30, 1, 4), statistics.snapshot(),
+                "Merged snapshots should be visible to the next read.");
+        assertEquals(List.of("statistics-ingest"), List.copyOf(Set.copyOf(mergingThreads)),
+                "Only the ingest thread should write to the provider.");
+    }
+
+    @Test
+    public void testProviderFailureIsRethrown() {
+        IllegalArgumentException cause = new IllegalArgumentException("broken provider");
+        Statistics broken = new VarHandleThreadSafeStatistics() {
+            @Override
+            public void event(int[] values, int offset, int length) {
+                throw cause;
+            }
+        };
+        BoundedIngestStatistics statistics = new BoundedIngestStatistics(broken, 1, OverflowPolicy.BLOCK, 1);
+        statistics.event(1);
+        assertSame(cause, assertThrows(IllegalStateException.class, statistics::snapshot).getCause(),
+                "Reads should fail with the provider's exception.");
+        assertSame(cause, assertThrows(IllegalStateException.class, () -> {
+            statistics.event(2);
+            statistics.event(3);
+        }).getCause(), "Blocked writers should fail with the provider's exception.");
+        assertSame(cause, assertThrows(IllegalStateException.class, statistics::close).getCause(),
+                "Closing should report the provider's exception.");
+    }
+
+    // records 0 while the ingest thread is held, then 1 to 10 into a queue of 4
+    private BoundedIngestStatistics overload(OverflowPolicy policy, int sampleRate) throws InterruptedException {
+        Statistics held = new VarHandleThreadSafeStatistics() {
+            @Override
+            public void event(int[] values, int offset, int length) {
+                recording.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.event(values, offset, length);
+            }
+        };
+        BoundedIngestStatistics statistics = open(held, 4, policy, sampleRate);
+        statistics.event(0);
+        recording.await();
+        for (int i = 1; i <= 10; i++) {
+            statistics.event(i);
+        }
+        release.countDown();
+        return statistics;
+    }
+
+    private BoundedIngestStatistics open(Statistics delegate, int capacity, OverflowPolicy policy, int sampleRate) {
+        BoundedIngestStatistics statistics = new BoundedIngestStatistics(delegate, capacity, policy, sampleRate);
+        opened.add(statistics);
+        return statistics;
+    }
+}
@@ -16,6 +16,11 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  *   enabling multiple readers to access the statistics simultaneously without blocking each other.</li>
  *   <li>Write operations (e.g., {@code event(int n)}) acquire the write lock, ensuring exclusive access
  *   to modify the underlying data structures.</li>
+ *   <li>Batches passed to {@code event(int[], int, int)} are aggregated before the write lock is taken,
+ *   so a batch costs one lock acquisition instead of one per value.</li>
+ *   <li>The sum of squares is a 128-bit integer split over two {@code long} fields, so events near
+ *   {@link Integer#MAX_VALUE} cannot overflow it, and {@code variance()} evaluates it exactly with
+ *   {@link StatisticsSnapshot#variance(long, long, long, long)} instead of dividing integers.</li>
  *   <li>This segregation maximizes throughput by leveraging the high read-to-write ratio typically observed
  *   in statistical systems.</li>
  * </ul>
@@ -53,8 +58,9 @@ public class LockBasedThreadSafeStatistics implements Statistics {
     private int min = Integer.MAX_VALUE;
     private int max = Integer.MIN_VALUE;
     private long sum = 0;
+    private long sumOfSquaresHigh = 0;
     private long sumOfSquares = 0;
-    private int count = 0;
+    private long count = 0;
 
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
@@ -64,7 +70,9 @@ public class LockBasedThreadSafeStatistics implements Statistics {
         try {
             count++;
             sum += n;
-            sumOfSquares += (long) n * n;
+            long square = (long) n * n;
+            sumOfSquaresHigh += Int128.carry(sumOfSquares, square);
+            sumOfSquares += square;
 
             if (n < min) {
                 min = n;
@@ -77,6 +85,29 @@ public class LockBasedThreadSafeStatistics implements Statistics {
         }
     }
 
+    @Override
+    public void event(int[] values, int offset, int length) {
+        // aggregate outside the lock, so the whole batch costs a single lock hold
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        lock.writeLock().lock();
+        try {
+            count += snapshot.count();
+            sum += snapshot.sum();
+            sumOfSquaresHigh += snapshot.sumOfSquaresHigh() + Int128.carry(sumOfSquares, snapshot.sumOfSquares());
+            sumOfSquares += snapshot.sumOfSquares();
+            min = Math.min(min, snapshot.min());
+            max = Math.max(max, snapshot.max());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     @Override
     public int min() {
         lock.readLock().lock(); // Use read lock for reading
@@ -111,10 +142,17 @@ public class LockBasedThreadSafeStatistics implements Statistics {
     public float variance() {
         lock.readLock().lock();
         try {
-            if (count == 0) return 0;
+            return StatisticsSnapshot.variance(count, sum, sumOfSquaresHigh, sumOfSquares);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-            long meanSquare = sum * sum / count;
-            return (float) (sumOfSquares - meanSquare) / count;
+    @Override
+    public StatisticsSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new StatisticsSnapshot(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
         } finally {
             lock.readLock().unlock();
         }
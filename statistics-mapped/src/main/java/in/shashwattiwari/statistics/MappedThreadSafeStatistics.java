@@ -0,0 +1,348 @@
+package in.shashwattiwari.statistics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * {@code MappedThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface
+ * whose accumulators live in a memory-mapped file, so they survive a restart of the process.
+ *
+ * <p>The file is mapped once with {@link FileChannel#map}. Events update the mapped bytes in place through
+ * {@link MethodHandles#byteBufferViewVarHandle byte buffer view} {@link VarHandle}s, with the same
+ * {@code started}/{@code count} protocol as {@code VarHandleThreadSafeStatistics}. The hot path never issues a
+ * write call: the operating system flushes dirty pages of the page cache on its own, and a process crash loses
+ * nothing that was written to the mapping. Reattaching after a restart maps the file again, no log is replayed.
+ *
+ * <h2>File Format:</h2>
+ * A single 72 byte little-endian record:
+ * <pre>
+ *      0  int   magic "STAT"
+ *      4  int   format version
+ *      8  int   1 while attached, 0 after a clean close
+ *     12  int   reserved
+ *     16  long  CRC32C of bytes 0-15 and 24-71, written on close
+ *     24  long  started
+ *     32  long  count
+ *     40  long  sum
+ *     48  long  sum of squares, low 64 bits
+ *     56  int   min
+ *     60  int   max
+ *     64  long  sum of squares, high 64 bits
+ * </pre>
+ * The checksum is only maintained on {@link #close()}, keeping it off the hot path. A cleanly closed file whose
+ * checksum does not match is rejected as corrupt. A file that was still attached when its process died is
+ * accepted as is: its mapped state is as recent as the crash, but an event in flight at that moment may be
+ * partially applied.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>An exclusive {@link FileLock} keeps two instances, in this or another process, from attaching to the same
+ *   file.</li>
+ *   <li>All fields are naturally aligned, as atomic access to a direct buffer requires.</li>
+ *   <li>The byte order is fixed, so a file can be moved between machines.</li>
+ *   <li>It is not registered for {@link java.util.ServiceLoader}: every discovered instance would attach to the
+ *   same shared file. Construct it with the file it should own.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     try (MappedThreadSafeStatistics stats = new MappedThreadSafeStatistics(Path.of("latency.stats"))) {
+ *         stats.event(5);
+ *         System.out.println("Mean since first start: " + stats.mean());
+ *     }
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * Writes cost the same as {@code VarHandleThreadSafeStatistics}. Durability against power loss is only as good
+ * as the operating system's page cache write-back; call {@link #force()} where a hard guarantee is needed.
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class MappedThreadSafeStatistics implements Statistics, AutoCloseable {
+
+    static final int MAX_OPTIMISTIC_READS = 256;
+    static final int MAX_WRITER_WAITS = 1024;
+
+    static final int MAGIC = 0x53544154;
+    static final int VERSION = 1;
+    static final int SIZE = 72;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int STATE_OFFSET = 8;
+    private static final int CHECKSUM_OFFSET = 16;
+    private static final int STARTED_OFFSET = 24;
+    private static final int COUNT_OFFSET = 32;
+    private static final int SUM_OFFSET = 40;
+    private static final int SUM_OF_SQUARES_OFFSET = 48;
+    private static final int MIN_OFFSET = 56;
+    private static final int MAX_OFFSET = 60;
+    private static final int SUM_OF_SQUARES_HIGH_OFFSET = 64;
+
+    private static final int ATTACHED = 1;
+    private static final int CLOSED = 0;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BLOCKING_READERS;
+
+    static {
+        try {
+            BLOCKING_READERS = MethodHandles.lookup().findVarHandle(MappedThreadSafeStatistics.class,
+                    "blockingReaders", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+
+    // readers that gave up on optimistic reads, new events briefly wait while it is not 0
+    private volatile int blockingReaders;
+    // the mapping outlives the channel, so a late write would silently invalidate the checksum
+    private volatile boolean closed;
+
+    /**
+     * Attaches to {@code file}, creating and initializing it if it does not exist.
+     *
+     * @throws UncheckedIOException if the file cannot be mapped, is attached elsewhere, has an unsupported format
+     *                              version or fails its checksum
+     */
+    public MappedThreadSafeStatistics(Path file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.lock = lock(channel, file);
+            long size = channel.size();
+            if (size != 0 && size != SIZE) {
+                throw new IOException(file + " is not a statistics file: " + size + " bytes");
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            if (size == 0) {
+                initialize();
+            } else {
+                validate(file);
+            }
+            this.channel = channel;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        INTS.setVolatile(buffer, STATE_OFFSET, ATTACHED);
+    }
+
+    @Override
+    public void event(int n) {
+        publish(1, n, 0, (long) n * n, n, n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        publish(snapshot.count(), snapshot.sum(), snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares(),
+                snapshot.min(), snapshot.max());
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Reads all fields, retrying until no event was in flight while they were read. Like
+     * {@code VarHandleThreadSafeStatistics}, asks new writers to wait, for at most {@value #MAX_WRITER_WAITS}
+     * spins, if the optimistic reads keep failing.
+     *
+     * @throws IllegalStateException if this instance is closed
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        checkOpen();
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            StatisticsSnapshot snapshot = tryRead();
+            if (snapshot != null) return snapshot;
+            Thread.onSpinWait();
+        }
+        BLOCKING_READERS.getAndAdd(this, 1);
+        try {
+            StatisticsSnapshot snapshot;
+            while ((snapshot = tryRead()) == null) {
+                Thread.onSpinWait();
+            }
+            return snapshot;
+        } finally {
+            BLOCKING_READERS.getAndAdd(this, -1);
+        }
+    }
+
+    /**
+     * Writes the mapped state through to the storage device.
+     *
+     * @throws IllegalStateException if this instance is closed
+     */
+    public void force() {
+        checkOpen();
+        buffer.force();
+    }
+
+    /**
+     * Marks the file as cleanly closed, stores its checksum, forces it to the storage device and releases it.
+     * Must not be called while other threads are still recording events. Any later use throws
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+
+        closed = true;
+        INTS.setVolatile(buffer, STATE_OFFSET, CLOSED);
+        LONGS.setVolatile(buffer, CHECKSUM_OFFSET, checksum());
+        buffer.force();
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // null if an event was in flight while the fields were read
+    private StatisticsSnapshot tryRead() {
+        long completed = (long) LONGS.getVolatile(buffer, COUNT_OFFSET);
+        long began = (long) LONGS.getVolatile(buffer, STARTED_OFFSET);
+        int min = (int) INTS.getVolatile(buffer, MIN_OFFSET);
+        int max = (int) INTS.getVolatile(buffer, MAX_OFFSET);
+        long sum = (long) LONGS.getVolatile(buffer, SUM_OFFSET);
+        long sumOfSquares = (long) LONGS.getVolatile(buffer, SUM_OF_SQUARES_OFFSET);
+        long sumOfSquaresHigh = (long) LONGS.getVolatile(buffer, SUM_OF_SQUARES_HIGH_OFFSET);
+        if (completed != began || began != (long) LONGS.getVolatile(buffer, STARTED_OFFSET)) return null;
+
+        return new StatisticsSnapshot(completed, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+    }
+
+    private void publish(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+        checkOpen();
+        // bounded, so a reader descheduled while holding writers off cannot stall them
+        for (int spins = 0; spins < MAX_WRITER_WAITS && blockingReaders != 0; spins++) {
+            Thread.onSpinWait();
+        }
+        LONGS.getAndAdd(buffer, STARTED_OFFSET, count);
+
+        LONGS.getAndAdd(buffer, SUM_OFFSET, sum);
+        long low = (long) LONGS.getAndAdd(buffer, SUM_OF_SQUARES_OFFSET, sumOfSquares);
+        long high = sumOfSquaresHigh + Int128.carry(low, sumOfSquares);
+        if (high != 0) {
+            LONGS.getAndAdd(buffer, SUM_OF_SQUARES_HIGH_OFFSET, high);
+        }
+
+        int current;
+        while (min < (current = (int) INTS.getVolatile(buffer, MIN_OFFSET))
+                && !INTS.weakCompareAndSet(buffer, MIN_OFFSET, current, min)) {
+            Thread.onSpinWait();
+        }
+        while (max > (current = (int) INTS.getVolatile(buffer, MAX_OFFSET))
+                && !INTS.weakCompareAndSet(buffer, MAX_OFFSET, current, max)) {
+            Thread.onSpinWait();
+        }
+
+        LONGS.getAndAdd(buffer, COUNT_OFFSET, count);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("MappedThreadSafeStatistics is closed");
+        }
+    }
+
+    private void initialize() {
+        INTS.set(buffer, MAGIC_OFFSET, MAGIC);
+        INTS.set(buffer, VERSION_OFFSET, VERSION);
+        INTS.set(buffer, MIN_OFFSET, Integer.MAX_VALUE);
+        INTS.set(buffer, MAX_OFFSET, Integer.MIN_VALUE);
+        buffer.force();
+    }
+
+    private void validate(Path file) throws IOException {
+        if ((int) INTS.get(buffer, MAGIC_OFFSET) != MAGIC) {
+            throw new IOException(file + " is not a statistics file");
+        }
+        int version = (int) INTS.get(buffer, VERSION_OFFSET);
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported format version " + version);
+        }
+        if ((int) INTS.get(buffer, STATE_OFFSET) == CLOSED) {
+            if ((long) LONGS.get(buffer, CHECKSUM_OFFSET) != checksum()) {
+                throw new IOException(file + " is corrupt: checksum mismatch");
+            }
+        } else {
+            // attached when its process died: an event may have been interrupted between started and count
+            LONGS.set(buffer, STARTED_OFFSET, (long) LONGS.get(buffer, COUNT_OFFSET));
+        }
+    }
+
+    private long checksum() {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, CHECKSUM_OFFSET));
+        crc.update(buffer.slice(STARTED_OFFSET, SIZE - STARTED_OFFSET));
+        return crc.getValue();
+    }
+
+    private static FileLock lock(FileChannel channel, Path file) throws IOException {
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException(file + " is attached by another process");
+            }
+            return lock;
+        } catch (OverlappingFileLockException e) {
+            throw new IOException(file + " is already attached in this process", e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already failing, keep the original exception
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedThreadSafeStatisticsTest extends StatisticsTestBase {
+
+    @TempDir
+    Path directory;
+
+    private final List<MappedThreadSafeStatistics> opened = new ArrayList<>();
+
+    @AfterEach
+    public void closeAll() {
+        opened.forEach(MappedThreadSafeStatistics::close);
+    }
+
+    @Override
+    protected Statistics createStatistics() {
+        return open(directory.resolve(opened.size() + ".stats"));
+    }
+
+    @Test
+    public void testReadsAreConsistentUnderWrites() throws InterruptedException {
+        assertConsistentUnderWrites(createStatistics());
+    }
+
+    @Test
+    public void testStateSurvivesReattach() {
+        Path file = directory.resolve("restart.stats");
+        MappedThreadSafeStatistics statistics = open(file);
+        statistics.event(5);
+        statistics.event(new int[]{15, 25}, 0, 2);
+        StatisticsSnapshot before = statistics.snapshot();
+        statistics.close();
+
+        MappedThreadSafeStatistics reattached = open(file);
+        assertEquals(before, reattached.snapshot(), "State should survive a restart.");
+        reattached.event(-5);
+        assertEquals(-5, reattached.min(), "Reattached instance should keep recording.");
+    }
+
+    @Test
+    public void testUseAfterCloseIsRejected() {
+        Path file = directory.resolve("closed.stats");
+        MappedThreadSafeStatistics statistics = open(file);
+        statistics.event(5);
+        statistics.close();
+        assertThrows(IllegalStateException.class, () -> statistics.event(7));
+        assertThrows(IllegalStateException.class, () -> statistics.merge(new StatisticsSnapshot(1, 7, 49, 7, 7)));
+        assertThrows(IllegalStateException.class, statistics::snapshot);
+
+        assertEquals(new StatisticsSnapshot(1, 5, 25, 5, 5), open(file).snapshot(),
+                "A late event should neither reach nor corrupt the closed file.");
+    }
+
+    @Test
+    public void testFileCannotBeAttachedTwice() {
+        Path file = directory.resolve("shared.stats");
+        open(file);
+        assertThrows(UncheckedIOException.class, () -> new MappedThreadSafeStatistics(file));
+    }
+
+    @Test
+    public void testCorruptFileIsRejected() throws IOException {
+        Path file = directory.resolve("corrupt.stats");
+        MappedThreadSafeStatistics statistics = open(file);
+        statistics.event(5);
+        statistics.close();
+
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(40);
+            raw.write(0x7F);
+        }
+        assertThrows(UncheckedIOException.class, () -> new MappedThreadSafeStatistics(file), "Checksum should fail.");
+
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(4);
+            raw.write(MappedThreadSafeStatistics.VERSION + 1);
+        }
+        assertThrows(UncheckedIOException.class, () -> new MappedThreadSafeStatistics(file), "Version should fail.");
+    }
+
+    private MappedThreadSafeStatistics open(Path file) {
+        MappedThreadSafeStatistics statistics = new MappedThreadSafeStatistics(file);
+        opened.add(statistics);
+        return statistics;
+    }
+}
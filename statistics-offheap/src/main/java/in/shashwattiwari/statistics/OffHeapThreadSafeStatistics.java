@@ -0,0 +1,234 @@
+package in.shashwattiwari.statistics;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemoryLayout.PathElement;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * {@code OffHeapThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface
+ * whose accumulators live outside the Java heap.
+ *
+ * <p>The count, sum, 128-bit sum of squares, minimum and maximum are stored in a 48 byte {@link MemorySegment}
+ * allocated through the Foreign Function &amp; Memory API. They are updated with the atomic access modes of the
+ * {@link VarHandle}s derived from the segment's {@link MemoryLayout}, using the same {@code started}/{@code count}
+ * protocol as {@code VarHandleThreadSafeStatistics}. The garbage collector never scans or copies the accumulators,
+ * which matters when millions of them are kept alive.
+ *
+ * <h2>Arena Lifecycle:</h2>
+ * The no-argument constructor, which {@link java.util.ServiceLoader} uses, allocates in an automatic
+ * {@link Arena}: the garbage collector releases the memory once the instance is unreachable, so providers that are
+ * never closed do not leak. Instances created with {@link #OffHeapThreadSafeStatistics(Arena)} allocate in the
+ * caller's arena instead, so many accumulators can be released at once by closing it. Any use after the memory
+ * was released throws {@link IllegalStateException}.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>Only arenas whose segments are accessible by every thread, such as shared, automatic and global arenas,
+ *   are usable: the segment is written by many threads, which a confined arena forbids. The constructor rejects
+ *   any other arena.</li>
+ *   <li>The layout is naturally aligned, as atomic access modes on a segment require.</li>
+ *   <li>Recording an event allocates nothing, on or off the heap.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     try (Arena arena = Arena.ofShared()) {
+ *         Statistics stats = new OffHeapThreadSafeStatistics(arena);
+ *         stats.event(5);
+ *         stats.event(10);
+ *         System.out.println("Mean: " + stats.mean());
+ *     }
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * Memory access through a segment is bounds and liveness checked. Both checks are hoisted or eliminated by the JIT
+ * in hot loops, but a shared arena's {@code close()} is expensive: it has to synchronize with every thread that
+ * may be accessing it. Release accumulators in bulk through a common arena rather than one by one.
+ *
+ * <h2>Requirements:</h2>
+ * JDK 22 or newer. The layout {@link VarHandle}s take a base offset coordinate, which the preview API of JDK 21
+ * does not.
+ *
+ * <h2>References:</h2>
+ * <ul>
+ *   <li>JEP 454, Foreign Function &amp; Memory API: <a href="https://openjdk.org/jeps/454">openjdk.org</a>.</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class OffHeapThreadSafeStatistics implements Statistics {
+
+    static final int MAX_OPTIMISTIC_READS = 256;
+    static final int MAX_WRITER_WAITS = 1024;
+
+    static final MemoryLayout LAYOUT = MemoryLayout.structLayout(
+            JAVA_LONG.withName("started"),
+            JAVA_LONG.withName("count"),
+            JAVA_LONG.withName("sum"),
+            JAVA_LONG.withName("sumOfSquares"),
+            JAVA_LONG.withName("sumOfSquaresHigh"),
+            JAVA_INT.withName("min"),
+            JAVA_INT.withName("max"));
+
+    // all handles take the segment and a base offset, which is always 0
+    private static final VarHandle STARTED = LAYOUT.varHandle(PathElement.groupElement("started"));
+    private static final VarHandle COUNT = LAYOUT.varHandle(PathElement.groupElement("count"));
+    private static final VarHandle SUM = LAYOUT.varHandle(PathElement.groupElement("sum"));
+    private static final VarHandle SUM_OF_SQUARES = LAYOUT.varHandle(PathElement.groupElement("sumOfSquares"));
+    private static final VarHandle SUM_OF_SQUARES_HIGH =
+            LAYOUT.varHandle(PathElement.groupElement("sumOfSquaresHigh"));
+    private static final VarHandle MIN = LAYOUT.varHandle(PathElement.groupElement("min"));
+    private static final VarHandle MAX = LAYOUT.varHandle(PathElement.groupElement("max"));
+
+    // a confined segment is only accessible by its owner, never by this thread
+    private static final Thread NEVER_STARTED = Thread.ofVirtual().unstarted(() -> {
+    });
+
+    private static final VarHandle BLOCKING_READERS;
+
+    static {
+        try {
+            BLOCKING_READERS = MethodHandles.lookup().findVarHandle(OffHeapThreadSafeStatistics.class,
+                    "blockingReaders", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MemorySegment segment;
+
+    // readers that gave up on optimistic reads, new events briefly wait while it is not 0
+    private volatile int blockingReaders;
+
+    /**
+     * Allocates in an automatic arena, released by the garbage collector once this instance is unreachable.
+     */
+    public OffHeapThreadSafeStatistics() {
+        this(Arena.ofAuto());
+    }
+
+    /**
+     * Allocates in {@code arena}, which must be shared and stays owned by the caller.
+     *
+     * @throws IllegalArgumentException if segments of {@code arena} are confined to one thread
+     */
+    public OffHeapThreadSafeStatistics(Arena arena) {
+        this.segment = arena.allocate(LAYOUT);
+        if (!segment.isAccessibleBy(NEVER_STARTED)) {
+            throw new IllegalArgumentException("Arena must be accessible by every thread, such as a shared arena: "
+                    + arena);
+        }
+        MIN.setVolatile(segment, 0L, Integer.MAX_VALUE);
+        MAX.setVolatile(segment, 0L, Integer.MIN_VALUE);
+    }
+
+    @Override
+    public void event(int n) {
+        publish(1, n, 0, (long) n * n, n, n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        publish(snapshot.count(), snapshot.sum(), snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares(),
+                snapshot.min(), snapshot.max());
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Reads all fields, retrying until no event was in flight while they were read. Like
+     * {@code VarHandleThreadSafeStatistics}, asks new writers to wait, for at most {@value #MAX_WRITER_WAITS}
+     * spins, if the optimistic reads keep failing.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            StatisticsSnapshot snapshot = tryRead();
+            if (snapshot != null) return snapshot;
+            Thread.onSpinWait();
+        }
+        BLOCKING_READERS.getAndAdd(this, 1);
+        try {
+            StatisticsSnapshot snapshot;
+            while ((snapshot = tryRead()) == null) {
+                Thread.onSpinWait();
+            }
+            return snapshot;
+        } finally {
+            BLOCKING_READERS.getAndAdd(this, -1);
+        }
+    }
+
+    // null if an event was in flight while the fields were read
+    private StatisticsSnapshot tryRead() {
+        long completed = (long) COUNT.getVolatile(segment, 0L);
+        long began = (long) STARTED.getVolatile(segment, 0L);
+        int min = (int) MIN.getVolatile(segment, 0L);
+        int max = (int) MAX.getVolatile(segment, 0L);
+        long sum = (long) SUM.getVolatile(segment, 0L);
+        long sumOfSquares = (long) SUM_OF_SQUARES.getVolatile(segment, 0L);
+        long sumOfSquaresHigh = (long) SUM_OF_SQUARES_HIGH.getVolatile(segment, 0L);
+        if (completed != began || began != (long) STARTED.getVolatile(segment, 0L)) return null;
+
+        return new StatisticsSnapshot(completed, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+    }
+
+    private void publish(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+        // bounded, so a reader descheduled while holding writers off cannot stall them
+        for (int spins = 0; spins < MAX_WRITER_WAITS && blockingReaders != 0; spins++) {
+            Thread.onSpinWait();
+        }
+        STARTED.getAndAdd(segment, 0L, count);
+
+        SUM.getAndAdd(segment, 0L, sum);
+        long low = (long) SUM_OF_SQUARES.getAndAdd(segment, 0L, sumOfSquares);
+        long high = sumOfSquaresHigh + Int128.carry(low, sumOfSquares);
+        if (high != 0) {
+            SUM_OF_SQUARES_HIGH.getAndAdd(segment, 0L, high);
+        }
+
+        int current;
+        while (min < (current = (int) MIN.getVolatile(segment, 0L))
+                && !MIN.weakCompareAndSet(segment, 0L, current, min)) {
+            Thread.onSpinWait();
+        }
+        while (max > (current = (int) MAX.getVolatile(segment, 0L))
+                && !MAX.weakCompareAndSet(segment, 0L, current, max)) {
+            Thread.onSpinWait();
+        }
+
+        COUNT.getAndAdd(segment, 0L, count);
+    }
+}
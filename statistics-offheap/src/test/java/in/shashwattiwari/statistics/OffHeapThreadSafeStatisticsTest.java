@@ -0,0 +1,55 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OffHeapThreadSafeStatisticsTest extends StatisticsTestBase {
+
+    // instances handed to the shared tests are released together after each test
+    private final Arena arena = Arena.ofShared();
+
+    @AfterEach
+    public void closeArena() {
+        arena.close();
+    }
+
+    @Override
+    protected Statistics createStatistics() {
+        return new OffHeapThreadSafeStatistics(arena);
+    }
+
+    @Test
+    public void testReadsAreConsistentUnderWrites() throws InterruptedException {
+        assertConsistentUnderWrites(createStatistics());
+    }
+
+    @Test
+    public void testDefaultInstanceNeedsNoArena() {
+        OffHeapThreadSafeStatistics statistics = new OffHeapThreadSafeStatistics();
+        statistics.event(7);
+        statistics.event(new int[]{3, 11}, 0, 2);
+        assertEquals(new StatisticsSnapshot(3, 21, 179, 3, 11), statistics.snapshot(), "Snapshot is incorrect.");
+    }
+
+    @Test
+    public void testClosedArenaRejectsUse() {
+        Arena borrowed = Arena.ofShared();
+        OffHeapThreadSafeStatistics statistics = new OffHeapThreadSafeStatistics(borrowed);
+        statistics.event(7);
+        borrowed.close();
+        assertThrows(IllegalStateException.class, () -> statistics.event(8), "Released memory must not be written.");
+        assertThrows(IllegalStateException.class, statistics::snapshot, "Released memory must not be read.");
+    }
+
+    @Test
+    public void testConfinedArenaIsRejected() {
+        try (Arena confined = Arena.ofConfined()) {
+            assertThrows(IllegalArgumentException.class, () -> new OffHeapThreadSafeStatistics(confined));
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package in.shashwattiwari.statistics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * {@code StatisticsRegistry} keeps one set of statistics per {@code long} key, for key spaces such as
+ * endpoint/customer pairs that are too large for a map of {@link Statistics} instances.
+ *
+ * <p>A {@code ConcurrentHashMap<String, Statistics>} costs a node, a key object and a provider instance per key,
+ * and often an allocation per event. Here the accumulators of all keys live in parallel primitive arrays: slot
+ * {@code i} of {@code keys}, {@code count}, {@code sum}, the two halves of the 128-bit {@code sumOfSquares},
+ * {@code min} and {@code max} belong together. Slots are found through an open-addressing hash table with linear
+ * probing over {@code keys}, so a key costs 60 bytes and recording an event allocates nothing.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>A key is inserted by claiming an empty slot with a compare-and-set, so lookups and inserts are
+ *   lock-free. Keys are never removed, which keeps probing simple and slots stable.</li>
+ *   <li>The per-slot update follows {@code VarHandleThreadSafeStatistics}: {@code started} is incremented before
+ *   the fields and {@code count} after, which lets {@link #snapshot(long)} validate a consistent read. A reader
+ *   whose optimistic reads keep failing asks new writers of its key to wait until its read validates. They wait
+ *   at most {@value #MAX_WRITER_WAITS} spins, so a descheduled reader cannot stall them, and writers of other
+ *   keys never wait for it.</li>
+ *   <li>The capacity is fixed at construction, like a preallocated buffer. Size it to about twice the expected
+ *   number of keys to keep probe sequences short.</li>
+ *   <li>{@link Long#MIN_VALUE} marks empty slots and cannot be used as a key.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     StatisticsRegistry registry = new StatisticsRegistry(1 &lt;&lt; 20);
+ *     registry.event(endpointId, 12);
+ *     StatisticsSnapshot latency = registry.snapshot(endpointId);
+ *     System.out.println("Mean: " + latency.mean());
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * Neighbouring slots share cache lines, so two threads hammering adjacent keys contend in the same way as two
+ * threads writing one {@code VarHandleThreadSafeStatistics}. Distinct, well-spread keys mostly do not.
+ *
+ * @author Shashwat Tiwari
+ */
+
+public final class StatisticsRegistry {
+
+    static final int MAX_OPTIMISTIC_READS = 256;
+    static final int MAX_WRITER_WAITS = 1024;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle SIZE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SIZE = lookup.findVarHandle(StatisticsRegistry.class, "size", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int mask;
+    private final long[] keys;
+    // events that began updating the slot
+    private final long[] started;
+    // events that finished updating the slot
+    private final long[] count;
+    private final long[] sum;
+    private final long[] sumOfSquaresHigh;
+    private final long[] sumOfSquares;
+    private final int[] min;
+    private final int[] max;
+    // readers of the slot that gave up on optimistic reads, new events of the slot briefly wait while it is not 0
+    private final int[] blockingReaders;
+
+    private volatile int size;
+
+    /**
+     * @param capacity maximum number of keys, rounded up to a power of two
+     */
+    public StatisticsRegistry(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30: " + capacity);
+        }
+        int slots = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = slots - 1;
+        this.keys = new long[slots];
+        this.started = new long[slots];
+        this.count = new long[slots];
+        this.sum = new long[slots];
+        this.sumOfSquaresHigh = new long[slots];
+        this.sumOfSquares = new long[slots];
+        this.min = new int[slots];
+        this.max = new int[slots];
+        this.blockingReaders = new int[slots];
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(min, Integer.MAX_VALUE);
+        Arrays.fill(max, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Records event {@code n} for {@code key}, registering the key on first use.
+     *
+     * @throws IllegalStateException if the key is new and the registry is full
+     */
+    public void event(long key, int n) {
+        publish(slot(key), 1, n, 0, (long) n * n, n, n);
+    }
+
+    /**
+     * Records {@code length} events from {@code values}, starting at {@code offset}, for {@code key}.
+     */
+    public void event(long key, int[] values, int offset, int length) {
+        merge(key, BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    /**
+     * Folds the events summarized by {@code snapshot} into the statistics of {@code key}.
+     */
+    public void merge(long key, StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        publish(slot(key), snapshot.count(), snapshot.sum(), snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares(),
+                snapshot.min(), snapshot.max());
+    }
+
+    /**
+     * Consistent snapshot of the statistics of {@code key}, {@link StatisticsSnapshot#EMPTY} for an unknown key.
+     * Never registers the key.
+     */
+    public StatisticsSnapshot snapshot(long key) {
+        int slot = find(key);
+        if (slot < 0) return StatisticsSnapshot.EMPTY;
+
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            StatisticsSnapshot snapshot = tryRead(slot);
+            if (snapshot != null) return snapshot;
+            Thread.onSpinWait();
+        }
+        INTS.getAndAdd(blockingReaders, slot, 1);
+        try {
+            StatisticsSnapshot snapshot;
+            while ((snapshot = tryRead(slot)) == null) {
+                Thread.onSpinWait();
+            }
+            return snapshot;
+        } finally {
+            INTS.getAndAdd(blockingReaders, slot, -1);
+        }
+    }
+
+    /**
+     * Whether an event or a merge was ever recorded for {@code key}.
+     */
+    public boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Number of registered keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@link Statistics} view of a single key. The view holds no state of its own, so it is cheap to create on
+     * demand and any number of views of one key see the same events.
+     */
+    public Statistics statistics(long key) {
+        checkKey(key);
+        return new KeyStatistics(key);
+    }
+
+    private final class KeyStatistics implements Statistics {
+        private final long key;
+
+        KeyStatistics(long key) {
+            this.key = key;
+        }
+
+        @Override
+        public void event(int n) {
+            StatisticsRegistry.this.event(key, n);
+        }
+
+        @Override
+        public void event(int[] values, int offset, int length) {
+            StatisticsRegistry.this.event(key, values, offset, length);
+        }
+
+        @Override
+        public int min() {
+            return snapshot().min();
+        }
+
+        @Override
+        public int max() {
+            return snapshot().max();
+        }
+
+        @Override
+        public float mean() {
+            return snapshot().mean();
+        }
+
+        @Override
+        public float variance() {
+            return snapshot().variance();
+        }
+
+        @Override
+        public StatisticsSnapshot snapshot() {
+            return StatisticsRegistry.this.snapshot(key);
+        }
+
+        @Override
+        public void merge(StatisticsSnapshot snapshot) {
+            StatisticsRegistry.this.merge(key, snapshot);
+        }
+    }
+
+    // null if an event was in flight while the slot was read
+    private StatisticsSnapshot tryRead(int slot) {
+        long completed = (long) LONGS.getVolatile(count, slot);
+        long began = (long) LONGS.getVolatile(started, slot);
+        int min = (int) INTS.getVolatile(this.min, slot);
+        int max = (int) INTS.getVolatile(this.max, slot);
+        long sum = (long) LONGS.getVolatile(this.sum, slot);
+        long sumOfSquares = (long) LONGS.getVolatile(this.sumOfSquares, slot);
+        long sumOfSquaresHigh = (long) LONGS.getVolatile(this.sumOfSquaresHigh, slot);
+        if (completed != began || began != (long) LONGS.getVolatile(started, slot)) return null;
+
+        return new StatisticsSnapshot(completed, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+    }
+
+    private void publish(int slot, long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min,
+                         int max) {
+        // bounded, so a reader descheduled while holding writers off cannot stall them
+        for (int spins = 0; spins < MAX_WRITER_WAITS && (int) INTS.getVolatile(blockingReaders, slot) != 0; spins++) {
+            Thread.onSpinWait();
+        }
+        LONGS.getAndAdd(started, slot, count);
+
+        LONGS.getAndAdd(this.sum, slot, sum);
+        long low = (long) LONGS.getAndAdd(this.sumOfSquares, slot, sumOfSquares);
+        long high = sumOfSquaresHigh + Int128.carry(low, sumOfSquares);
+        if (high != 0) {
+            LONGS.getAndAdd(this.sumOfSquaresHigh, slot, high);
+        }
+
+        int current;
+        while (min < (current = (int) INTS.getVolatile(this.min, slot))
+                && !INTS.weakCompareAndSet(this.min, slot, current, min)) {
+            Thread.onSpinWait();
+        }
+        while (max > (current = (int) INTS.getVolatile(this.max, slot))
+                && !INTS.weakCompareAndSet(this.max, slot, current, max)) {
+            Thread.onSpinWait();
+        }
+
+        LONGS.getAndAdd(this.count, slot, count);
+    }
+
+    /**
+     * Returns the slot of {@code key}, claiming an empty one if the key is new.
+     */
+    private int slot(long key) {
+        checkKey(key);
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = (long) LONGS.getAcquire(keys, slot);
+            if (current == key) return slot;
+            if (current == EMPTY) {
+                long witness = (long) LONGS.compareAndExchangeRelease(keys, slot, EMPTY, key);
+                if (witness == EMPTY) {
+                    SIZE.getAndAdd(this, 1);
+                    return slot;
+                }
+                if (witness == key) return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        throw new IllegalStateException("StatisticsRegistry is full: " + keys.length + " keys");
+    }
+
+    /**
+     * Returns the slot of {@code key}, or {@code -1} if it was never registered.
+     */
+    private int find(long key) {
+        checkKey(key);
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = (long) LONGS.getAcquire(keys, slot);
+            if (current == key) return slot;
+            // keys are never removed, so an empty slot ends the probe sequence
+            if (current == EMPTY) return -1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Long.MIN_VALUE is reserved and cannot be used as a key");
+        }
+    }
+
+    // Finalizer of MurmurHash3, sequential ids would otherwise fill one run of neighbouring slots
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,86 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatisticsRegistryTest extends StatisticsTestBase {
+
+    // every instance handed to the shared tests is a fresh key of a shared registry
+    private final StatisticsRegistry registry = new StatisticsRegistry(64);
+    private long nextKey;
+
+    @Override
+    protected Statistics createStatistics() {
+        return registry.statistics(nextKey++);
+    }
+
+    @Test
+    public void testReadsAreConsistentUnderWrites() throws InterruptedException {
+        assertConsistentUnderWrites(createStatistics());
+    }
+
+    @Test
+    public void testKeysAreIndependent() {
+        StatisticsRegistry registry = new StatisticsRegistry(1_000);
+        for (long key = 0; key < 1_000; key++) {
+            registry.event(key, (int) key);
+            registry.event(key, (int) key + 10);
+        }
+
+        assertEquals(1_000, registry.size(), "Every key should be registered once.");
+        for (long key = 0; key < 1_000; key++) {
+            StatisticsSnapshot snapshot = registry.snapshot(key);
+            assertEquals(2, snapshot.count(), "Count is incorrect for key " + key);
+            assertEquals(key, snapshot.min(), "Minimum value is incorrect for key " + key);
+            assertEquals(key + 5, snapshot.mean(), 0.001, "Mean is incorrect for key " + key);
+        }
+
+        assertSame(StatisticsSnapshot.EMPTY, registry.snapshot(-1), "Unknown keys should have no events.");
+        assertFalse(registry.contains(-1), "Reading a key should not register it.");
+        assertTrue(registry.contains(999));
+        assertThrows(IllegalArgumentException.class, () -> registry.event(Long.MIN_VALUE, 1));
+    }
+
+    @Test
+    public void testFullRegistryRejectsNewKeys() {
+        StatisticsRegistry registry = new StatisticsRegistry(4);
+        for (long key = 0; key < 4; key++) {
+            registry.event(key, 1);
+        }
+
+        registry.event(3, 1);
+        assertThrows(IllegalStateException.class, () -> registry.event(4, 1));
+        assertEquals(2, registry.snapshot(3).count(), "Existing keys should still accept events.");
+    }
+
+    @Test
+    public void testConcurrentInsertsAndUpdates() throws InterruptedException {
+        StatisticsRegistry registry = new StatisticsRegistry(1 << 12);
+        int threads = 8;
+        int keys = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                for (long key = 0; key < keys; key++) {
+                    registry.event(key, 1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(keys, registry.size(), "Racing inserts of one key should claim a single slot.");
+        for (long key = 0; key < keys; key++) {
+            assertEquals(threads, registry.snapshot(key).count(), "No event should be lost for key " + key);
+        }
+    }
+}
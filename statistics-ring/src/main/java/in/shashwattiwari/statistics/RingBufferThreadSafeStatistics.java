@@ -0,0 +1,360 @@
+package in.shashwattiwari.statistics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.Cleaner;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code RingBufferThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface
+ * where writers only publish their values into a ring buffer, in the style of the LMAX Disruptor, and a single
+ * consumer thread does all the accumulating.
+ *
+ * <p>{@link #event(int)} claims the next sequence with one {@code getAndAdd}, stores the value in the
+ * preallocated {@code int} slot of that sequence and marks the slot available with a release store. The consumer
+ * drains every available slot in one pass into plain, unsynchronized fields, then publishes the result as an
+ * immutable {@link StatisticsSnapshot} tagged with the sequence it covers. No writer ever touches an accumulator,
+ * so the contended read-modify-write of {@code LockBasedThreadSafeStatistics} is reduced to the claim.
+ *
+ * <p>Reads are consistent with the writes that happened before them: a reader takes the current claim sequence
+ * and waits until a snapshot at least that recent is published, which takes one drain pass of the consumer.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>A slot's availability flag holds the lap of the ring it was written in, so the consumer can tell a fresh
+ *   value from last lap's without a separate publish cursor, and writers can complete out of order.</li>
+ *   <li>The claim and consume sequences sit on cache lines of their own, and the slot arrays are padded on both
+ *   ends.</li>
+ *   <li>Batches and merged snapshots skip the ring: they are pre-aggregated and handed to the consumer
+ *   through a single merged snapshot it swaps out each pass.</li>
+ *   <li>Writers wait for room when the ring is full, and the consumer waits for values when it is empty, with
+ *   the configured {@link WaitStrategy}.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     try (RingBufferThreadSafeStatistics stats = new RingBufferThreadSafeStatistics(1 &lt;&lt; 16,
+ *             RingBufferThreadSafeStatistics.WaitStrategy.PARK)) {
+ *         stats.event(5);
+ *         System.out.println("Mean: " + stats.mean());
+ *     }
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * Each instance owns a consumer thread, stopped by {@link #close()} or once the instance is unreachable. With
+ * {@link WaitStrategy#BUSY_SPIN} or {@link WaitStrategy#YIELD} that thread keeps a core busy even while the ring
+ * is empty, in exchange for the lowest latency; {@link WaitStrategy#PARK}, the default, frees the core but adds up
+ * to {@value #PARK_NANOS} ns to each read of an idle instance.
+ *
+ * <h2>References:</h2>
+ * <ul>
+ *   <li>M. Thompson, D. Farley, M. Barker, P. Gee, A. Stewart, Disruptor: High performance alternative to
+ *   bounded queues for exchanging data between concurrent threads:
+ *   <a href="https://lmax-exchange.github.io/disruptor/disruptor.html">lmax-exchange.github.io</a>.</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class RingBufferThreadSafeStatistics implements Statistics, AutoCloseable {
+
+    /**
+     * How a thread waits for the ring: writers for room, the consumer for values, readers for a snapshot.
+     */
+    public enum WaitStrategy {
+        /**
+         * Spins on the CPU. Lowest latency, but the consumer keeps a core busy even when idle, and waiting
+         * threads starve the consumer when there are fewer cores than threads.
+         */
+        BUSY_SPIN {
+            @Override
+            void idle() {
+                Thread.onSpinWait();
+            }
+        },
+        /**
+         * Yields the CPU to other threads between checks. On a machine with idle cores {@link Thread#yield()}
+         * returns immediately, so an idle consumer still keeps a core busy.
+         */
+        YIELD {
+            @Override
+            void idle() {
+                Thread.yield();
+            }
+        },
+        /**
+         * Parks for {@value RingBufferThreadSafeStatistics#PARK_NANOS} ns between checks. Frees the CPU at the cost
+         * of latency.
+         */
+        PARK {
+            @Override
+            void idle() {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        };
+
+        abstract void idle();
+    }
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 14;
+    static final long PARK_NANOS = 50_000;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // Left padding, keeps the previous object's hot fields off this sequence's cache line
+    private static class SequencePadding {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    private static class SequenceValue extends SequencePadding {
+        volatile long value;
+    }
+
+    // Right padding, keeps the next object's hot fields off this sequence's cache line
+    private static final class Sequence extends SequenceValue {
+        long p11, p12, p13, p14, p15, p16, p17;
+
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        long getAndAdd(long delta) {
+            return (long) VALUE.getAndAdd(this, delta);
+        }
+
+        long getAcquire() {
+            return (long) VALUE.getAcquire(this);
+        }
+
+        void setRelease(long value) {
+            VALUE.setRelease(this, value);
+        }
+    }
+
+    /**
+     * A published state of the accumulator, covering all values up to {@code sequence} and all merges up to
+     * {@code merges}.
+     */
+    private record Version(long sequence, long merges, StatisticsSnapshot snapshot) {
+    }
+
+    /**
+     * Everything the consumer thread needs. Holds no reference to the outer instance, so that the instance can
+     * become unreachable while the consumer runs.
+     */
+    private static final class Ring implements Runnable {
+
+        // keeps the first and last slot off the cache lines of the array header and the next object
+        private static final int PAD = 64 / Integer.BYTES;
+
+        private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+        private final WaitStrategy waitStrategy;
+        private final int mask;
+        private final int shift;
+        private final int[] values;
+        private final int[] available;
+
+        private final Sequence claimed = new Sequence();
+        private final Sequence consumed = new Sequence();
+
+        private final AtomicReference<StatisticsSnapshot> pendingMerged =
+                new AtomicReference<>(StatisticsSnapshot.EMPTY);
+        private final AtomicLong requestedMerges = new AtomicLong();
+
+        private volatile Version published = new Version(0, 0, StatisticsSnapshot.EMPTY);
+        private volatile boolean running = true;
+
+        // consumer state, only touched by the consumer thread
+        private long count;
+        private long sum;
+        private long sumOfSquaresHigh;
+        private long sumOfSquares;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+
+        Ring(int bufferSize, WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            this.mask = bufferSize - 1;
+            this.shift = Integer.numberOfTrailingZeros(bufferSize);
+            this.values = new int[bufferSize + 2 * PAD];
+            this.available = new int[bufferSize + 2 * PAD];
+            Arrays.fill(available, -1);
+        }
+
+        void publish(int n) {
+            long sequence = claimed.getAndAdd(1);
+            long wrapPoint = sequence - (mask + 1);
+            while (wrapPoint >= consumed.getAcquire()) {
+                waitStrategy.idle();
+            }
+            int slot = PAD + (int) (sequence & mask);
+            values[slot] = n;
+            AVAILABLE.setRelease(available, slot, (int) (sequence >>> shift));
+        }
+
+        void merge(StatisticsSnapshot snapshot) {
+            pendingMerged.accumulateAndGet(snapshot, StatisticsSnapshot::merge);
+            // counted after the merge is pending, so a reader that waits for this count waits for the merge
+            requestedMerges.incrementAndGet();
+        }
+
+        StatisticsSnapshot snapshot() {
+            long sequence = claimed.getAcquire();
+            long merges = requestedMerges.get();
+            Version version;
+            while ((version = published).sequence() < sequence || version.merges() < merges) {
+                if (!running) return version.snapshot();
+                waitStrategy.idle();
+            }
+            return version.snapshot();
+        }
+
+        void shutdown() {
+            running = false;
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            while (true) {
+                boolean stopping = !running;
+                long merges = requestedMerges.get();
+                StatisticsSnapshot merged = pendingMerged.getAndSet(StatisticsSnapshot.EMPTY);
+                long first = next;
+                int slot;
+                while ((int) AVAILABLE.getAcquire(available, slot = PAD + (int) (next & mask))
+                        == (int) (next >>> shift)) {
+                    int n = values[slot];
+                    count++;
+                    sum += n;
+                    long square = (long) n * n;
+                    sumOfSquaresHigh += Int128.carry(sumOfSquares, square);
+                    sumOfSquares += square;
+                    min = Math.min(min, n);
+                    max = Math.max(max, n);
+                    next++;
+                }
+                if (next != first) {
+                    consumed.setRelease(next);
+                }
+                if (merged.count() != 0) {
+                    count += merged.count();
+                    sum += merged.sum();
+                    sumOfSquaresHigh += merged.sumOfSquaresHigh() + Int128.carry(sumOfSquares, merged.sumOfSquares());
+                    sumOfSquares += merged.sumOfSquares();
+                    min = Math.min(min, merged.min());
+                    max = Math.max(max, merged.max());
+                }
+                if (next != first || merges != published.merges()) {
+                    StatisticsSnapshot snapshot = count == 0
+                            ? StatisticsSnapshot.EMPTY
+                            : new StatisticsSnapshot(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+                    published = new Version(next, merges, snapshot);
+                } else if (stopping) {
+                    return;
+                } else {
+                    waitStrategy.idle();
+                }
+            }
+        }
+    }
+
+    private final Ring ring;
+    private final Thread consumer;
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * A ring of {@value #DEFAULT_BUFFER_SIZE} slots, waiting with {@link WaitStrategy#PARK}.
+     */
+    public RingBufferThreadSafeStatistics() {
+        this(DEFAULT_BUFFER_SIZE, WaitStrategy.PARK);
+    }
+
+    /**
+     * A ring of {@code bufferSize} slots, which must be a power of two.
+     */
+    public RingBufferThreadSafeStatistics(int bufferSize, WaitStrategy waitStrategy) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a power of two: " + bufferSize);
+        }
+        this.ring = new Ring(bufferSize, waitStrategy);
+        this.consumer = Thread.ofPlatform().name("statistics-ring-consumer").daemon().start(ring);
+        this.cleanable = CLEANER.register(this, ring::shutdown);
+    }
+
+    @Override
+    public void event(int n) {
+        ring.publish(n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        ring.merge(snapshot);
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Waits until the consumer has published a snapshot that includes every event and merge that happened before
+     * this call, and returns it.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        return ring.snapshot();
+    }
+
+    /**
+     * Drains the ring and stops the consumer thread. Must not be called while other threads are still recording
+     * events; reads keep returning the last published snapshot.
+     */
+    @Override
+    public void close() {
+        cleanable.clean();
+        boolean interrupted = false;
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
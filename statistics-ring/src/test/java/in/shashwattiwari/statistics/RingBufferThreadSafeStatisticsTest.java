@@ -0,0 +1,75 @@
+package in.shashwattiwari.statistics;
+
+import in.shashwattiwari.statistics.RingBufferThreadSafeStatistics.WaitStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RingBufferThreadSafeStatisticsTest extends StatisticsTestBase {
+
+    private final List<RingBufferThreadSafeStatistics> opened = new ArrayList<>();
+
+    @AfterEach
+    public void closeAll() {
+        opened.forEach(RingBufferThreadSafeStatistics::close);
+    }
+
+    @Override
+    protected Statistics createStatistics() {
+        return open(RingBufferThreadSafeStatistics.DEFAULT_BUFFER_SIZE, WaitStrategy.YIELD);
+    }
+
+    @Test
+    public void testWritersWaitForRoomInFullRing() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            RingBufferThreadSafeStatistics statistics = open(64, waitStrategy);
+            ExecutorService executorService = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; t++) {
+                executorService.submit(() -> {
+                    for (int i = 1; i <= 1_000; i++) {
+                        statistics.event(i);
+                    }
+                });
+            }
+            executorService.shutdown();
+            assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS), waitStrategy + " should not deadlock.");
+
+            StatisticsSnapshot snapshot = statistics.snapshot();
+            assertEquals(4_000, snapshot.count(), waitStrategy + " should not lose events.");
+            assertEquals(4 * 500_500, snapshot.sum(), waitStrategy + " should not lose events.");
+        }
+    }
+
+    @Test
+    public void testCloseDrainsRing() {
+        RingBufferThreadSafeStatistics statistics = open(8, WaitStrategy.PARK);
+        for (int i = 0; i < 100; i++) {
+            statistics.event(i);
+        }
+        statistics.merge(new StatisticsSnapshot(1, -1, 1, -1, -1));
+        statistics.close();
+        assertEquals(101, statistics.snapshot().count(), "Closing should publish every recorded event.");
+        assertEquals(-1, statistics.min(), "Closing should apply pending merges.");
+    }
+
+    @Test
+    public void testBufferSizeMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RingBufferThreadSafeStatistics(1000, WaitStrategy.YIELD));
+    }
+
+    private RingBufferThreadSafeStatistics open(int bufferSize, WaitStrategy waitStrategy) {
+        RingBufferThreadSafeStatistics statistics = new RingBufferThreadSafeStatistics(bufferSize, waitStrategy);
+        opened.add(statistics);
+        return statistics;
+    }
+}
@@ -0,0 +1,34 @@
+package in.shashwattiwari.statistics;
+
+import java.util.ServiceLoader;
+
+/**
+ * Kernel that pre-aggregates a batch of events into a {@link StatisticsSnapshot}.
+ *
+ * <p>Providers use it from {@link Statistics#event(int[], int, int)} so the whole batch is folded into their
+ * state with one lock acquisition or one CAS. The kernel itself is discovered through {@link ServiceLoader},
+ * which lets a SIMD implementation (see the {@code statistics-vector} module) replace the scalar loop when it is
+ * on the class path and the JVM can run it.
+ */
+public interface BatchAggregator {
+
+    /**
+     * Aggregates {@code length} events from {@code values}, starting at {@code offset}.
+     *
+     * @param values array holding the events
+     * @param offset index of the first event in {@code values}
+     * @param length number of events
+     * @return the moments of the batch
+     */
+    StatisticsSnapshot aggregate(int[] values, int offset, int length);
+
+    /**
+     * The first {@code BatchAggregator} registered in {@code META-INF/services} that can be instantiated,
+     * otherwise the {@link ScalarBatchAggregator}.
+     *
+     * @return the kernel shared by all providers
+     */
+    static BatchAggregator getInstance() {
+        return BatchAggregatorHolder.INSTANCE;
+    }
+}
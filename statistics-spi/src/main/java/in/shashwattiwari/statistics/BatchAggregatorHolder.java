@@ -0,0 +1,26 @@
+package in.shashwattiwari.statistics;
+
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Lazily resolves the {@link BatchAggregator} returned by {@link BatchAggregator#getInstance()}.
+ */
+final class BatchAggregatorHolder {
+
+    static final BatchAggregator INSTANCE = load();
+
+    private BatchAggregatorHolder() {
+    }
+
+    private static BatchAggregator load() {
+        try {
+            return ServiceLoader.load(BatchAggregator.class)
+                    .findFirst()
+                    .orElseGet(ScalarBatchAggregator::new);
+        } catch (ServiceConfigurationError | LinkageError e) {
+            // e.g. the vector kernel is present but jdk.incubator.vector was not added to the module graph
+            return new ScalarBatchAggregator();
+        }
+    }
+}
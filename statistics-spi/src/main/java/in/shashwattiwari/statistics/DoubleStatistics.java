@@ -0,0 +1,61 @@
+package in.shashwattiwari.statistics;
+
+import java.util.Objects;
+
+/**
+ * Statistics over {@code double} events, for fractional values that the {@code int} events of {@link Statistics}
+ * cannot represent. Implementations have to be thread-safe and should use compensated or otherwise numerically
+ * stable arithmetic, so that the results do not degrade with the number of events.
+ */
+public interface DoubleStatistics {
+    /**
+     * Takes a single event as input.
+     *
+     * @param x the event
+     */
+    void event(double x);
+    /**
+     * Consumes {@code length} events from {@code values}, starting at {@code offset}. The default calls
+     * {@link #event(double)} once per value.
+     *
+     * @param values array holding the events
+     * @param offset index of the first event in {@code values}
+     * @param length number of events
+     */
+    default void event(double[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        for (int i = offset; i < offset + length; i++) {
+            event(values[i]);
+        }
+    }
+    /**
+     * Number of events consumed.
+     *
+     * @return the number of events consumed
+     */
+    long count();
+    /**
+     * Minimum of all the events consumed, {@code 0} when there are none.
+     *
+     * @return the minimum of all the events consumed, {@code 0} when there are none
+     */
+    double min();
+    /**
+     * Maximum of all the events consumed, {@code 0} when there are none.
+     *
+     * @return the maximum of all the events consumed, {@code 0} when there are none
+     */
+    double max();
+    /**
+     * Mean of all the events consumed, {@code 0} when there are none.
+     *
+     * @return the mean of all the events consumed, {@code 0} when there are none
+     */
+    double mean();
+    /**
+     * Variance of all the events consumed, {@code 0} when there are none.
+     *
+     * @return the variance of all the events consumed, {@code 0} when there are none
+     */
+    double variance();
+}
@@ -0,0 +1,85 @@
+package in.shashwattiwari.statistics;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic on 128-bit two's complement integers kept as a pair of {@code long}s, a high and a low half.
+ *
+ * <p>The halves are plain primitives, so an accumulator can keep them in fields and add to them without
+ * allocating:
+ * <pre>
+ *     high += Int128.high(n) + Int128.carry(low, n);
+ *     low += n;
+ * </pre>
+ * The carry only depends on the previous low half, so the halves can also live in two atomically updated fields:
+ * the carry is computed from the value returned by {@code getAndAdd} on the low half and then added to the high
+ * half, without a lock or a retry loop. A reader sees a consistent pair when the fields are guarded the way the
+ * other fields of the accumulator are, for example by a {@code started}/{@code count} check.
+ *
+ * <p>Only {@link #toBigInteger} creates objects; {@link #toDouble} is allocation free.
+ */
+public final class Int128 {
+
+    private Int128() {
+    }
+
+    /**
+     * High half of {@code value} widened to 128 bits: {@code -1} if it is negative, {@code 0} otherwise.
+     */
+    public static long high(long value) {
+        return value >> 63;
+    }
+
+    /**
+     * Carry out of the low half when {@code addend} is added to {@code low}: {@code 1} if the unsigned addition
+     * overflows, {@code 0} otherwise.
+     */
+    public static long carry(long low, long addend) {
+        return Long.compareUnsigned(low + addend, low) < 0 ? 1 : 0;
+    }
+
+    /**
+     * High half of the 128-bit square of {@code value}; the low half is {@code value * value}.
+     */
+    public static long squareHigh(long value) {
+        return Math.multiplyHigh(value, value);
+    }
+
+    public static BigInteger toBigInteger(long high, long low) {
+        BigInteger unsignedLow = BigInteger.valueOf(low >>> 1).shiftLeft(1).or(BigInteger.valueOf(low & 1));
+        return BigInteger.valueOf(high).shiftLeft(Long.SIZE).or(unsignedLow);
+    }
+
+    /**
+     * High half of the 128-bit product of {@code factor} and the 128-bit value, modulo {@code 2^128}; the low half
+     * is {@code factor * low}.
+     */
+    public static long multiplyHigh(long high, long low, long factor) {
+        return Math.unsignedMultiplyHigh(low, factor) + high * factor - (factor < 0 ? low : 0);
+    }
+
+    /**
+     * {@code double} closest to the 128-bit value.
+     */
+    public static double toDouble(long high, long low) {
+        if (high == high(low)) return low;
+
+        boolean negative = high < 0;
+        if (negative) {
+            high = ~high + (low == 0 ? 1 : 0);
+            low = -low;
+        }
+        // keep the 64 most significant bits, and fold the rest into a sticky bit for rounding
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(high);
+        long top;
+        if (shift == 0) {
+            top = low;
+        } else if (shift == Long.SIZE) {
+            top = high | (low != 0 ? 1 : 0);
+        } else {
+            top = high << (Long.SIZE - shift) | low >>> shift | (low << (Long.SIZE - shift) != 0 ? 1 : 0);
+        }
+        double magnitude = Math.scalb((double) (top >>> 1 | top & 1), shift + 1);
+        return negative ? -magnitude : magnitude;
+    }
+}
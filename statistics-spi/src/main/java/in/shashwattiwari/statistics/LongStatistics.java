@@ -0,0 +1,62 @@
+package in.shashwattiwari.statistics;
+
+import java.util.Objects;
+
+/**
+ * Statistics over {@code long} events, such as latencies in nanoseconds or sizes in bytes that do not fit in the
+ * {@code int} events of {@link Statistics}. The getters are widened to match. Implementations have to be
+ * thread-safe and must not overflow where {@code Statistics} may: the sum of squares of {@code long} events needs
+ * more than 64 bits.
+ */
+public interface LongStatistics {
+    /**
+     * Takes a single event as input.
+     *
+     * @param n the event
+     */
+    void event(long n);
+    /**
+     * Consumes {@code length} events from {@code values}, starting at {@code offset}. The default calls
+     * {@link #event(long)} once per value.
+     *
+     * @param values array holding the events
+     * @param offset index of the first event in {@code values}
+     * @param length number of events
+     */
+    default void event(long[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        for (int i = offset; i < offset + length; i++) {
+            event(values[i]);
+        }
+    }
+    /**
+     * Number of events consumed.
+     *
+     * @return the number of events consumed
+     */
+    long count();
+    /**
+     * Minimum of all the events consumed, {@code 0} when there are none.
+     *
+     * @return the minimum of all the events consumed, {@code 0} when there are none
+     */
+    long min();
+    /**
+     * Maximum of all the events consumed, {@code 0} when there are none.
+     *
+     * @return the maximum of all the events consumed, {@code 0} when there are none
+     */
+    long max();
+    /**
+     * Mean of all the events consumed, {@code 0} when there are none.
+     *
+     * @return the mean of all the events consumed, {@code 0} when there are none
+     */
+    double mean();
+    /**
+     * Variance of all the events consumed, {@code 0} when there are none.
+     *
+     * @return the variance of all the events consumed, {@code 0} when there are none
+     */
+    double variance();
+}
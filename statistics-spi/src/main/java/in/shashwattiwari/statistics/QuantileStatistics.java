@@ -0,0 +1,26 @@
+package in.shashwattiwari.statistics;
+
+/**
+ * {@link Statistics} that also keep track of the distribution of the events, so tail values such as the p99
+ * and the fraction of events under a threshold can be queried. Implementations trade exactness for bounded
+ * memory and document the error they guarantee.
+ */
+public interface QuantileStatistics extends Statistics {
+    /**
+     * Value below or at which a fraction {@code q} of the events consumed fall, {@code 0} when no event has
+     * been consumed. {@code quantile(0.5)} is the median, {@code quantile(0.99)} the p99.
+     *
+     * @param q fraction of the events, between {@code 0} and {@code 1}
+     * @return the estimated value at that fraction
+     * @throws IllegalArgumentException if {@code q} is not in {@code [0, 1]}
+     */
+    double quantile(double q);
+    /**
+     * Fraction of the events consumed that are less than or equal to {@code x}, {@code 0} when no event has been
+     * consumed. The inverse of {@link #quantile(double)}.
+     *
+     * @param x threshold value
+     * @return the estimated fraction of events at or below {@code x}
+     */
+    double cdf(double x);
+}
@@ -0,0 +1,32 @@
+package in.shashwattiwari.statistics;
+
+import java.util.Objects;
+
+/**
+ * Portable {@link BatchAggregator} that folds the batch with a plain loop.
+ *
+ * <p>It is the fallback when no other kernel is registered or usable.
+ */
+public final class ScalarBatchAggregator implements BatchAggregator {
+
+    @Override
+    public StatisticsSnapshot aggregate(int[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long sum = 0;
+        long sumOfSquaresHigh = 0;
+        long sumOfSquares = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int n = values[i];
+            sum += n;
+            long square = (long) n * n;
+            sumOfSquaresHigh += Int128.carry(sumOfSquares, square);
+            sumOfSquares += square;
+            min = Math.min(min, n);
+            max = Math.max(max, n);
+        }
+        return new StatisticsSnapshot(length, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+    }
+}
@@ -1,5 +1,7 @@
 package in.shashwattiwari.statistics;
 
+import java.util.Objects;
+
 /**
  * Provide an implementation of the following interface.
  * The implementation has to be thread-safe. *
@@ -8,9 +10,26 @@ package in.shashwattiwari.statistics;
  * Please add comments explaining your choices */
 public interface Statistics {
     /**
-     * The only method which takes events as input. * @param n
+     * Takes a single event as input.
+     *
+     * @param n the event
      */
     void event(int n);
+    /**
+     * Consumes {@code length} events from {@code values}, starting at {@code offset}.
+     * The default calls {@link #event(int)} once per value, implementations should override it
+     * to aggregate the batch locally and publish it with a single synchronization step.
+     *
+     * @param values array holding the events
+     * @param offset index of the first event in {@code values}
+     * @param length number of events
+     */
+    default void event(int[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        for (int i = offset; i < offset + length; i++) {
+            event(values[i]);
+        }
+    }
     /**
      * Minimum of all the events consumed * @return
      */
@@ -26,4 +45,26 @@ public interface Statistics {
      * Variance of all the events consumed * @return
      */
     float variance();
+    /**
+     * Count, sum, sum of squares, minimum and maximum of all the events consumed,
+     * captured together in a single read so they are consistent with each other.
+     *
+     * @return an immutable snapshot of the events consumed so far
+     */
+    StatisticsSnapshot snapshot();
+    /**
+     * Folds the events summarized by {@code snapshot} into this instance, as if they had been consumed here.
+     * Merging is associative and commutative, so per-shard instances can be combined in any order.
+     *
+     * @param snapshot moments of the events to add
+     */
+    void merge(StatisticsSnapshot snapshot);
+    /**
+     * Folds a snapshot of {@code other} into this instance.
+     *
+     * @param other statistics whose events to add
+     */
+    default void merge(Statistics other) {
+        merge(other.snapshot());
+    }
 }
\ No newline at end of file
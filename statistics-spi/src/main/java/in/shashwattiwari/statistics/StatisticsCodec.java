@@ -0,0 +1,168 @@
+package in.shashwattiwari.statistics;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Versioned binary wire format for a {@link StatisticsSnapshot}, used to ship statistics between processes or to
+ * disk.
+ *
+ * <p>A record starts with a format version byte and a kind byte, followed by the fields of that kind:
+ * <pre>
+ *     byte     version, currently 1
+ *     byte     kind, 0 for moments
+ *     varint   count
+ *     varint   zig-zag sum
+ *     varint   sum of squares, low 64 bits
+ *     varint   sum of squares, high 64 bits
+ *     varint   zig-zag min     (absent when count is 0)
+ *     varint   zig-zag max     (absent when count is 0)
+ * </pre>
+ * Varints use 7 bits per byte, least significant group first, and the high bit as a continuation flag. Zig-zag
+ * maps small negative numbers to small unsigned ones, so a typical record takes 10 to 20 bytes instead of the 40
+ * of a fixed layout. The kind byte leaves room for richer payloads such as sketch buckets, which have their own
+ * decoders; the varint helpers are public so those can share the encoding.
+ *
+ * <p>Decoding reads straight from the given {@link ByteBuffer}, heap or direct, without copying it into an
+ * array first. Encoding and decoding use relative operations, so several records can be written to or read from
+ * one buffer in a row.
+ *
+ * <pre>
+ *     ByteBuffer wire = ByteBuffer.allocateDirect(StatisticsCodec.MAX_ENCODED_SIZE);
+ *     StatisticsCodec.encode(source.snapshot(), wire);
+ *     wire.flip();
+ *     StatisticsCodec.decodeInto(wire, target);
+ * </pre>
+ */
+public final class StatisticsCodec {
+
+    public static final byte VERSION = 1;
+    public static final byte MOMENTS = 0;
+
+    /**
+     * Upper bound of the size of an encoded snapshot, in bytes.
+     */
+    public static final int MAX_ENCODED_SIZE = 2 + 4 * 10 + 2 * 5;
+
+    private StatisticsCodec() {
+    }
+
+    /**
+     * Writes {@code snapshot} at the position of {@code out} and advances it.
+     *
+     * @throws BufferOverflowException if {@code out} has less than {@link #encodedSize} bytes remaining
+     */
+    public static void encode(StatisticsSnapshot snapshot, ByteBuffer out) {
+        out.put(VERSION);
+        out.put(MOMENTS);
+        putVarLong(out, snapshot.count());
+        putVarLong(out, zigZag(snapshot.sum()));
+        putVarLong(out, snapshot.sumOfSquares());
+        putVarLong(out, snapshot.sumOfSquaresHigh());
+        if (snapshot.count() != 0) {
+            putVarLong(out, zigZag(snapshot.min()));
+            putVarLong(out, zigZag(snapshot.max()));
+        }
+    }
+
+    /**
+     * Encodes {@code snapshot} into a new array of exactly {@link #encodedSize} bytes.
+     */
+    public static byte[] encode(StatisticsSnapshot snapshot) {
+        byte[] bytes = new byte[encodedSize(snapshot)];
+        encode(snapshot, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Number of bytes {@link #encode(StatisticsSnapshot, ByteBuffer)} writes for {@code snapshot}.
+     */
+    public static int encodedSize(StatisticsSnapshot snapshot) {
+        int size = 2 + varLongSize(snapshot.count()) + varLongSize(zigZag(snapshot.sum()))
+                + varLongSize(snapshot.sumOfSquares()) + varLongSize(snapshot.sumOfSquaresHigh());
+        if (snapshot.count() != 0) {
+            size += varLongSize(zigZag(snapshot.min())) + varLongSize(zigZag(snapshot.max()));
+        }
+        return size;
+    }
+
+    /**
+     * Reads a snapshot at the position of {@code in} and advances it past the record.
+     *
+     * @throws IllegalArgumentException if the record is truncated, malformed, of an unsupported version or not of
+     *                                  kind {@link #MOMENTS}
+     */
+    public static StatisticsSnapshot decode(ByteBuffer in) {
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported statistics format version: " + version);
+            }
+            byte kind = in.get();
+            if (kind != MOMENTS) {
+                throw new IllegalArgumentException("Unsupported statistics record kind: " + kind);
+            }
+            long count = getVarLong(in);
+            long sum = unZigZag(getVarLong(in));
+            long sumOfSquares = getVarLong(in);
+            long sumOfSquaresHigh = getVarLong(in);
+            if (count == 0) return StatisticsSnapshot.EMPTY;
+
+            int min = Math.toIntExact(unZigZag(getVarLong(in)));
+            int max = Math.toIntExact(unZigZag(getVarLong(in)));
+            return new StatisticsSnapshot(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+        } catch (BufferUnderflowException | ArithmeticException e) {
+            throw new IllegalArgumentException("Truncated or corrupt statistics record", e);
+        }
+    }
+
+    /**
+     * Decodes a snapshot from {@code in} and merges it into {@code target}, which can be any provider.
+     */
+    public static void decodeInto(ByteBuffer in, Statistics target) {
+        target.merge(decode(in));
+    }
+
+    /**
+     * Writes {@code value} as an unsigned varint of 1 to 10 bytes.
+     */
+    public static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint written by {@link #putVarLong(ByteBuffer, long)}.
+     *
+     * @throws IllegalArgumentException if the varint is longer than 10 bytes
+     * @throws BufferUnderflowException if {@code in} ends inside the varint
+     */
+    public static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Number of bytes {@link #putVarLong(ByteBuffer, long)} writes for {@code value}.
+     */
+    public static int varLongSize(long value) {
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
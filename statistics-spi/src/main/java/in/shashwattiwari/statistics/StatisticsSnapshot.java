@@ -0,0 +1,206 @@
+package in.shashwattiwari.statistics;
+
+/**
+ * Immutable, consistent view of the moments of a set of events.
+ *
+ * <p>A snapshot is returned by {@link Statistics#snapshot()}, so a reader that needs several statistics pays for a
+ * single read of the provider and gets values that belong together. It is also the result of a
+ * {@link BatchAggregator}, which providers fold into their state in one synchronization step.
+ *
+ * <p>The getters follow the conventions of {@link Statistics}: {@code min()}, {@code max()}, {@code mean()} and
+ * {@code variance()} are {@code 0} when no event has been recorded.
+ *
+ * <p>The square of an {@code int} event takes up to 62 bits, so a {@code long} sum of squares overflows after a
+ * handful of events near {@link Integer#MAX_VALUE}. The sum of squares is therefore a 128-bit integer, kept as a
+ * high and a low {@code long} with {@link Int128}, and {@link #variance(long, long, long, long)} computes the
+ * variance from it with exact integer arithmetic.
+ */
+public final class StatisticsSnapshot {
+
+    public static final StatisticsSnapshot EMPTY =
+            new StatisticsSnapshot(0, 0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE);
+
+    private final long count;
+    private final long sum;
+    private final long sumOfSquaresHigh;
+    private final long sumOfSquares;
+    private final int min;
+    private final int max;
+
+    /**
+     * Snapshot whose sum of squares fits in 64 bits; {@code sumOfSquares} is read as an unsigned value.
+     */
+    public StatisticsSnapshot(long count, long sum, long sumOfSquares, int min, int max) {
+        this(count, sum, 0, sumOfSquares, min, max);
+    }
+
+    /**
+     * Snapshot whose sum of squares is the 128-bit value {@code sumOfSquaresHigh:sumOfSquares}.
+     */
+    public StatisticsSnapshot(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+        this.count = count;
+        this.sum = sum;
+        this.sumOfSquaresHigh = sumOfSquaresHigh;
+        this.sumOfSquares = sumOfSquares;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Number of events consumed.
+     *
+     * @return the number of events consumed
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Sum of all the events consumed.
+     *
+     * @return the sum of all the events consumed
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * Low 64 bits of the sum of the squares of all the events consumed.
+     *
+     * @return the low 64 bits of the sum of the squares of all the events consumed
+     */
+    public long sumOfSquares() {
+        return sumOfSquares;
+    }
+
+    /**
+     * High 64 bits of the sum of the squares of all the events consumed.
+     *
+     * @return the high 64 bits of the sum of the squares of all the events consumed
+     */
+    public long sumOfSquaresHigh() {
+        return sumOfSquaresHigh;
+    }
+
+    /**
+     * Minimum of all the events consumed.
+     *
+     * @return the minimum of all the events consumed
+     */
+    public int min() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Maximum of all the events consumed.
+     *
+     * @return the maximum of all the events consumed
+     */
+    public int max() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * Mean of all the events consumed.
+     *
+     * @return the mean of all the events consumed
+     */
+    public float mean() {
+        return count == 0 ? 0 : (float) sum / count;
+    }
+
+    /**
+     * Variance of all the events consumed.
+     *
+     * @return the variance of all the events consumed
+     */
+    public float variance() {
+        return variance(count, sum, sumOfSquaresHigh, sumOfSquares);
+    }
+
+    /**
+     * Variance of {@code count} events with the given sum and 128-bit sum of squares, for providers that keep the
+     * moments in fields of their own.
+     *
+     * <p>It is computed as {@code (count * sumOfSquares - sum^2) / count^2}, where the numerator is evaluated exactly
+     * in 128-bit arithmetic and only then rounded. Unlike {@code sumOfSquares / count - mean^2} in floating point,
+     * this does not cancel out when the variance is small compared to the mean. The numerator is {@code count^2}
+     * times the variance, at most {@code count^2 * 2^62} for {@code int} events, so the result is exact for
+     * billions of events and never allocates.
+     */
+    public static float variance(long count, long sum, long sumOfSquaresHigh, long sumOfSquares) {
+        if (count == 0) return 0;
+
+        return (float) (sumOfSquaredDeviations(count, sum, sumOfSquaresHigh, sumOfSquares) / count);
+    }
+
+    /**
+     * Sum of the squared deviations from the mean, {@code count} times the variance, in double precision. This is
+     * the {@code M2} term of Welford's and Chan's algorithms, for providers that combine snapshots with a running
+     * mean of their own. It is computed exactly like {@link #variance(long, long, long, long)}.
+     */
+    public static double sumOfSquaredDeviations(long count, long sum, long sumOfSquaresHigh, long sumOfSquares) {
+        if (count == 0) return 0;
+
+        long scaledLow = sumOfSquares * count;
+        long scaledHigh = Int128.multiplyHigh(sumOfSquaresHigh, sumOfSquares, count);
+        long squareLow = sum * sum;
+        long high = scaledHigh - Int128.squareHigh(sum) - Int128.carry(scaledLow - squareLow, squareLow);
+        // torn reads of a concurrently updated provider can be slightly inconsistent, never report a negative
+        double numerator = Math.max(0, Int128.toDouble(high, scaledLow - squareLow));
+        return numerator / count;
+    }
+
+    /**
+     * Snapshot of the union of the events summarized by this snapshot and by {@code other}.
+     *
+     * <p>Parallel variance algorithms such as Chan et al. combine {@code (count, mean, M2)} triples with a
+     * correction term. A snapshot keeps the raw power sums instead, for which that combination reduces to
+     * adding counts, sums and sums of squares. Integer addition is exact, so the result does not depend on
+     * the order or grouping in which shards are merged.
+     *
+     * @param other snapshot of the events to add
+     * @return a snapshot of both sets of events
+     */
+    public StatisticsSnapshot merge(StatisticsSnapshot other) {
+        if (other.count == 0) return this;
+        if (count == 0) return other;
+        return new StatisticsSnapshot(
+                count + other.count,
+                sum + other.sum,
+                sumOfSquaresHigh + other.sumOfSquaresHigh + Int128.carry(sumOfSquares, other.sumOfSquares),
+                sumOfSquares + other.sumOfSquares,
+                Math.min(min, other.min),
+                Math.max(max, other.max));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StatisticsSnapshot other)) return false;
+        return count == other.count
+                && sum == other.sum
+                && sumOfSquaresHigh == other.sumOfSquaresHigh
+                && sumOfSquares == other.sumOfSquares
+                && min() == other.min()
+                && max() == other.max();
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(count);
+        result = 31 * result + Long.hashCode(sum);
+        result = 31 * result + Long.hashCode(sumOfSquaresHigh);
+        result = 31 * result + Long.hashCode(sumOfSquares);
+        result = 31 * result + min();
+        result = 31 * result + max();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "StatisticsSnapshot{count=" + count + ", sum=" + sum
+                + ", sumOfSquares=" + Int128.toBigInteger(sumOfSquaresHigh, sumOfSquares)
+                + ", min=" + min() + ", max=" + max() + "}";
+    }
+}
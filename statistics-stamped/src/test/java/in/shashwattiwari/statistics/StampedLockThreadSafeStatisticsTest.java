@@ -0,0 +1,8 @@
+package in.shashwattiwari.statistics;
+
+public class StampedLockThreadSafeStatisticsTest extends StatisticsTestBase {
+    @Override
+    protected Statistics createStatistics() {
+        return new StampedLockThreadSafeStatistics();
+    }
+}
@@ -0,0 +1,262 @@
+package in.shashwattiwari.statistics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * {@code StripedThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface.
+ *
+ * <p>Instead of funnelling every update through a single memory location, this implementation spreads
+ * writes across a table of cache-line padded cells, in the same spirit as {@link java.util.concurrent.atomic.LongAdder}.
+ * Each cell holds its own count, sum, sum of squares, minimum and maximum. A writer thread is mapped to a cell
+ * by hashing its thread id, so concurrent writers mostly touch different cache lines and do not invalidate
+ * each other.
+ *
+ * <p>The cells are only combined when a reader asks for {@code min()}, {@code max()}, {@code mean()} or
+ * {@code variance()}. This moves the cost from the write path to the read path, which is the right trade-off
+ * when events are recorded far more often than statistics are read.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>The cell table is sized to the next power of two of the available processors and cells are created
+ *   lazily, so a single-threaded instance only ever allocates one cell.</li>
+ *   <li>Cells are padded on both sides to keep neighbouring cells off the same cache line (false sharing).</li>
+ *   <li>Updates to a cell use {@link VarHandle} atomics, so two threads hashing to the same cell remain
+ *   correct, they merely contend.</li>
+ *   <li>Writes never allocate once the thread's cell exists.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     Statistics stats = new StripedThreadSafeStatistics();
+ *     stats.event(5);
+ *     stats.event(10);
+ *     System.out.println("Mean: " + stats.mean());
+ *     System.out.println("Variance: " + stats.variance());
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * Reads walk the whole cell table and are therefore more expensive than in
+ * {@link java.util.concurrent.atomic.AtomicReference} based implementations. Like {@code LongAdder#sum()},
+ * a read concurrent with writes is not a snapshot of a single instant, but every event is either fully in it or
+ * not at all.
+ *
+ * <h2>Consistent Reads:</h2>
+ * Each cell brackets its updates with the {@code started}/{@code count} protocol of
+ * {@code VarHandleThreadSafeStatistics}, and a read only folds a cell once its fields validate. A reader that
+ * loses {@value #MAX_OPTIMISTIC_READS} races in a row on one cell asks new writers to wait until it succeeds.
+ * Writers wait at most {@value #MAX_WRITER_WAITS} spins for it, so a descheduled reader cannot stall them.
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class StripedThreadSafeStatistics implements Statistics {
+
+    private static final int TABLE_SIZE = tableSizeFor(Runtime.getRuntime().availableProcessors());
+
+    static final int MAX_OPTIMISTIC_READS = 256;
+    static final int MAX_WRITER_WAITS = 1024;
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(Cell[].class);
+    private static final VarHandle BLOCKING_READERS;
+
+    static {
+        try {
+            BLOCKING_READERS = MethodHandles.lookup().findVarHandle(StripedThreadSafeStatistics.class,
+                    "blockingReaders", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Left padding, keeps the previous object's hot fields off this cell's cache line
+    private static class CellPadding {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    private static class CellValues extends CellPadding {
+        volatile long started;
+        volatile long count;
+        volatile long sum;
+        volatile long sumOfSquaresHigh;
+        volatile long sumOfSquares;
+        volatile int min = Integer.MAX_VALUE;
+        volatile int max = Integer.MIN_VALUE;
+    }
+
+    // Right padding, keeps the next object's hot fields off this cell's cache line
+    private static final class Cell extends CellValues {
+        long p11, p12, p13, p14, p15, p16, p17;
+
+        private static final VarHandle STARTED;
+        private static final VarHandle COUNT;
+        private static final VarHandle SUM;
+        private static final VarHandle SUM_OF_SQUARES_HIGH;
+        private static final VarHandle SUM_OF_SQUARES;
+        private static final VarHandle MIN;
+        private static final VarHandle MAX;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                STARTED = lookup.findVarHandle(CellValues.class, "started", long.class);
+                COUNT = lookup.findVarHandle(CellValues.class, "count", long.class);
+                SUM = lookup.findVarHandle(CellValues.class, "sum", long.class);
+                SUM_OF_SQUARES_HIGH = lookup.findVarHandle(CellValues.class, "sumOfSquaresHigh", long.class);
+                SUM_OF_SQUARES = lookup.findVarHandle(CellValues.class, "sumOfSquares", long.class);
+                MIN = lookup.findVarHandle(CellValues.class, "min", int.class);
+                MAX = lookup.findVarHandle(CellValues.class, "max", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        void add(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+            STARTED.getAndAdd(this, count);
+            SUM.getAndAdd(this, sum);
+            long low = (long) SUM_OF_SQUARES.getAndAdd(this, sumOfSquares);
+            long high = sumOfSquaresHigh + Int128.carry(low, sumOfSquares);
+            if (high != 0) {
+                SUM_OF_SQUARES_HIGH.getAndAdd(this, high);
+            }
+
+            int current;
+            while (min < (current = this.min) && !MIN.weakCompareAndSet(this, current, min)) {
+                Thread.onSpinWait();
+            }
+            while (max > (current = this.max) && !MAX.weakCompareAndSet(this, current, max)) {
+                Thread.onSpinWait();
+            }
+            // count last, so a reader that sees the event also sees all of its fields
+            COUNT.getAndAdd(this, count);
+        }
+
+        // null if an update was in flight while the fields were read
+        StatisticsSnapshot tryRead() {
+            long completed = this.count;
+            long began = this.started;
+            long sum = this.sum;
+            long sumOfSquaresHigh = this.sumOfSquaresHigh;
+            long sumOfSquares = this.sumOfSquares;
+            int min = this.min;
+            int max = this.max;
+            if (completed != began || began != this.started) return null;
+
+            return new StatisticsSnapshot(completed, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+        }
+    }
+
+    private final Cell[] cells = new Cell[TABLE_SIZE];
+
+    // readers that gave up on optimistic reads, new events briefly wait while it is not 0
+    private volatile int blockingReaders;
+
+    @Override
+    public void event(int n) {
+        add(1, n, 0, (long) n * n, n, n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        add(snapshot.count(), snapshot.sum(), snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares(),
+                snapshot.min(), snapshot.max());
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Folds all cells in a single pass, reading each one with validation. Cells are read one after the other,
+     * so, like {@code LongAdder#sum()}, the result is not a snapshot of a single instant, but it never contains
+     * part of an update.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        StatisticsSnapshot snapshot = new StatisticsSnapshot(0, 0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE);
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            Cell cell = cellAt(i);
+            if (cell != null) {
+                snapshot = snapshot.merge(read(cell));
+            }
+        }
+        return snapshot;
+    }
+
+    private StatisticsSnapshot read(Cell cell) {
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            StatisticsSnapshot snapshot = cell.tryRead();
+            if (snapshot != null) return snapshot;
+            Thread.onSpinWait();
+        }
+        BLOCKING_READERS.getAndAdd(this, 1);
+        try {
+            StatisticsSnapshot snapshot;
+            while ((snapshot = cell.tryRead()) == null) {
+                Thread.onSpinWait();
+            }
+            return snapshot;
+        } finally {
+            BLOCKING_READERS.getAndAdd(this, -1);
+        }
+    }
+
+    private void add(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+        // bounded, so a reader descheduled while holding writers off cannot stall them
+        for (int spins = 0; spins < MAX_WRITER_WAITS && blockingReaders != 0; spins++) {
+            Thread.onSpinWait();
+        }
+        cell().add(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+    }
+
+    private Cell cellAt(int index) {
+        return (Cell) CELLS.getAcquire(cells, index);
+    }
+
+    /**
+     * Returns the cell owned by the calling thread's stripe, creating it on first use.
+     */
+    private Cell cell() {
+        int index = mix(Thread.currentThread().threadId()) & (TABLE_SIZE - 1);
+        Cell cell = cellAt(index);
+        if (cell == null) {
+            Cell created = new Cell();
+            Cell witness = (Cell) CELLS.compareAndExchangeRelease(cells, index, null, created);
+            cell = witness == null ? created : witness;
+        }
+        return cell;
+    }
+
+    // Thread ids are sequential, spread them so neighbouring threads land on different cells
+    private static int mix(long threadId) {
+        long h = threadId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int processors) {
+        return Integer.highestOneBit(Math.max(1, processors - 1)) << 1;
+    }
+}
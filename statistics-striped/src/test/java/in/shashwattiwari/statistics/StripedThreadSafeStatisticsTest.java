@@ -0,0 +1,15 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+public class StripedThreadSafeStatisticsTest extends StatisticsTestBase {
+    @Override
+    protected Statistics createStatistics() {
+        return new StripedThreadSafeStatistics();
+    }
+
+    @Test
+    public void testReadsAreConsistentUnderWrites() throws InterruptedException {
+        assertConsistentUnderWrites(createStatistics());
+    }
+}
@@ -0,0 +1,396 @@
+package in.shashwattiwari.statistics;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code TDigestThreadSafeStatistics} provides a thread-safe implementation of the {@link QuantileStatistics}
+ * interface backed by a merging t-digest.
+ *
+ * <p>A t-digest summarizes the distribution as a sorted list of centroids, each a mean and a weight. Centroids
+ * near the median may absorb many events, while centroids in the tails stay small, so quantiles are most accurate
+ * where tail latency SLOs need them. Unlike a histogram, the memory used does not depend on the range of the
+ * values: it is bounded by the compression parameter alone.
+ *
+ * <p>Incoming events are appended to a primitive {@code int[]} buffer. When the buffer is full it is sorted,
+ * merged with the existing centroids in one linear pass, and the result is compressed with the {@code k1} scale
+ * function. Quantiles and the CDF are interpolated between centroid centers, with the exact minimum and maximum
+ * as end points.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>All state is guarded by a single {@link ReentrantLock}. Recording an event is an array store under the
+ *   lock, the cost of sorting and compressing is amortized over a whole buffer.</li>
+ *   <li>The moments are kept exactly next to the digest, so {@code mean()} and {@code variance()} are not
+ *   affected by the approximation.</li>
+ *   <li>Two digests merge by interleaving their centroids and compressing once, which is cheap enough to
+ *   combine per-node digests into a cluster-wide one. A {@link StatisticsSnapshot} only carries moments: merging
+ *   one updates min, max, mean and variance, but its events are only reflected in quantiles when they all have
+ *   the same value.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     QuantileStatistics stats = new TDigestThreadSafeStatistics();
+ *     stats.event(5);
+ *     stats.event(10);
+ *     System.out.println("p99: " + stats.quantile(0.99));
+ *     System.out.println("Below 8: " + stats.cdf(8));
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * <ul>
+ *   <li>Writers serialize on the lock, so this implementation is meant for moderate write rates or for
+ *   per-thread instances merged on read.</li>
+ *   <li>Reads flush the buffer first, so a read after many writes pays for one compression.</li>
+ *   <li>A larger compression keeps more centroids: it improves accuracy and costs memory and compression time
+ *   linearly.</li>
+ * </ul>
+ *
+ * <h2>References:</h2>
+ * <ul>
+ *   <li>T. Dunning, O. Ertl, Computing Extremely Accurate Quantiles Using t-Digests:
+ *   <a href="https://arxiv.org/abs/1902.04023">arxiv.org</a>.</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class TDigestThreadSafeStatistics implements QuantileStatistics {
+
+    static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // moments of every event, guarded by lock
+    private long count;
+    private long sum;
+    private long sumOfSquaresHigh;
+    private long sumOfSquares;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    // events not yet merged into the centroids, guarded by lock
+    private final int[] buffer;
+    private int buffered;
+
+    // centroids sorted by mean, guarded by lock
+    private final double[] means;
+    private final long[] weights;
+    private int centroids;
+    private long digestWeight;
+
+    // scratch space for the merge pass of a flush
+    private final double[] mergedMeans;
+    private final long[] mergedWeights;
+
+    public TDigestThreadSafeStatistics() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compression bound on the number of centroids, higher is more accurate
+     */
+    public TDigestThreadSafeStatistics(double compression) {
+        if (!(compression >= 10)) {
+            throw new IllegalArgumentException("compression must be at least 10: " + compression);
+        }
+        this.compression = compression;
+        // a compression keeps at most compression + 2 centroids, the rest is headroom for rounding
+        int capacity = 2 * (int) Math.ceil(compression) + 8;
+        this.buffer = new int[5 * (int) Math.ceil(compression)];
+        this.means = new double[capacity];
+        this.weights = new long[capacity];
+        this.mergedMeans = new double[capacity + buffer.length];
+        this.mergedWeights = new long[capacity + buffer.length];
+    }
+
+    @Override
+    public void event(int n) {
+        lock.lock();
+        try {
+            count++;
+            sum += n;
+            long square = (long) n * n;
+            sumOfSquaresHigh += Int128.carry(sumOfSquares, square);
+            sumOfSquares += square;
+            min = Math.min(min, n);
+            max = Math.max(max, n);
+            append(n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        // aggregate the moments outside the lock, the values still have to be buffered one by one
+        StatisticsSnapshot batch = BatchAggregator.getInstance().aggregate(values, offset, length);
+        if (batch.count() == 0) return;
+
+        lock.lock();
+        try {
+            addMoments(batch);
+            for (int i = offset; i < offset + length; i++) {
+                append(values[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        lock.lock();
+        try {
+            addMoments(snapshot);
+            if (snapshot.min() == snapshot.max()) {
+                flush();
+                addCentroids(new double[]{snapshot.min()}, new long[]{snapshot.count()}, 1, snapshot.count());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Merges the centroids of {@code other} if it is a t-digest, otherwise falls back to merging its snapshot.
+     */
+    @Override
+    public void merge(Statistics other) {
+        if (!(other instanceof TDigestThreadSafeStatistics digest)) {
+            QuantileStatistics.super.merge(other);
+            return;
+        }
+        // copy first, so the two locks are never held together
+        StatisticsSnapshot snapshot;
+        double[] otherMeans;
+        long[] otherWeights;
+        int otherCentroids;
+        long otherWeight;
+        digest.lock.lock();
+        try {
+            digest.flush();
+            snapshot = digest.snapshot();
+            otherMeans = Arrays.copyOf(digest.means, digest.centroids);
+            otherWeights = Arrays.copyOf(digest.weights, digest.centroids);
+            otherCentroids = digest.centroids;
+            otherWeight = digest.digestWeight;
+        } finally {
+            digest.lock.unlock();
+        }
+        if (snapshot.count() == 0) return;
+
+        lock.lock();
+        try {
+            addMoments(snapshot);
+            if (otherCentroids > 0) {
+                flush();
+                addCentroids(otherMeans, otherWeights, otherCentroids, otherWeight);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    @Override
+    public StatisticsSnapshot snapshot() {
+        lock.lock();
+        try {
+            return new StatisticsSnapshot(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Interpolates linearly between the centers of the two centroids around rank {@code q}, using the minimum
+     * and maximum as the values at ranks 0 and 1.
+     */
+    @Override
+    public double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("q must be between 0 and 1: " + q);
+        }
+        lock.lock();
+        try {
+            flush();
+            if (digestWeight == 0) return 0;
+
+            double target = q * digestWeight;
+            double previousRank = 0;
+            double previousValue = min;
+            double cumulative = 0;
+            for (int i = 0; i < centroids; i++) {
+                double center = cumulative + weights[i] / 2.0;
+                if (target <= center) {
+                    return interpolate(target, previousRank, previousValue, center, means[i]);
+                }
+                previousRank = center;
+                previousValue = means[i];
+                cumulative += weights[i];
+            }
+            return interpolate(target, previousRank, previousValue, digestWeight, max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inverse of {@link #quantile(double)}: interpolates the rank of {@code x} between the surrounding centroid
+     * centers.
+     */
+    @Override
+    public double cdf(double x) {
+        lock.lock();
+        try {
+            flush();
+            if (digestWeight == 0 || x < min) return 0;
+            if (x >= max) return 1;
+
+            double previousRank = 0;
+            double previousValue = min;
+            double cumulative = 0;
+            for (int i = 0; i < centroids; i++) {
+                double center = cumulative + weights[i] / 2.0;
+                if (x < means[i]) {
+                    return interpolate(x, previousValue, previousRank, means[i], center) / digestWeight;
+                }
+                previousRank = center;
+                previousValue = means[i];
+                cumulative += weights[i];
+            }
+            return interpolate(x, previousValue, previousRank, max, digestWeight) / digestWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called with lock held
+    private void addMoments(StatisticsSnapshot snapshot) {
+        count += snapshot.count();
+        sum += snapshot.sum();
+        sumOfSquaresHigh += snapshot.sumOfSquaresHigh() + Int128.carry(sumOfSquares, snapshot.sumOfSquares());
+        sumOfSquares += snapshot.sumOfSquares();
+        min = Math.min(min, snapshot.min());
+        max = Math.max(max, snapshot.max());
+    }
+
+    // Must be called with lock held
+    private void append(int n) {
+        if (buffered == buffer.length) {
+            flush();
+        }
+        buffer[buffered++] = n;
+    }
+
+    /**
+     * Sorts the buffered events, merges them with the centroids and compresses. Must be called with lock held.
+     */
+    private void flush() {
+        if (buffered == 0) return;
+
+        Arrays.sort(buffer, 0, buffered);
+        int merged = 0;
+        int i = 0;
+        int j = 0;
+        while (i < centroids || j < buffered) {
+            if (j == buffered || (i < centroids && means[i] <= buffer[j])) {
+                mergedMeans[merged] = means[i];
+                mergedWeights[merged++] = weights[i++];
+            } else {
+                mergedMeans[merged] = buffer[j++];
+                mergedWeights[merged++] = 1;
+            }
+        }
+        digestWeight += buffered;
+        buffered = 0;
+        compress(mergedMeans, mergedWeights, merged);
+    }
+
+    /**
+     * Merges sorted centroids of another digest and compresses. Must be called with lock held and an empty buffer.
+     */
+    private void addCentroids(double[] otherMeans, long[] otherWeights, int otherCentroids, long otherWeight) {
+        double[] combinedMeans = new double[centroids + otherCentroids];
+        long[] combinedWeights = new long[centroids + otherCentroids];
+        int combined = 0;
+        int i = 0;
+        int j = 0;
+        while (i < centroids || j < otherCentroids) {
+            if (j == otherCentroids || (i < centroids && means[i] <= otherMeans[j])) {
+                combinedMeans[combined] = means[i];
+                combinedWeights[combined++] = weights[i++];
+            } else {
+                combinedMeans[combined] = otherMeans[j];
+                combinedWeights[combined++] = otherWeights[j++];
+            }
+        }
+        digestWeight += otherWeight;
+        compress(combinedMeans, combinedWeights, combined);
+    }
+
+    /**
+     * Greedily merges neighbouring centroids as long as the merged centroid spans at most one unit of the
+     * {@code k1} scale function, and stores the result as the new centroids.
+     */
+    private void compress(double[] inMeans, long[] inWeights, int n) {
+        double total = digestWeight;
+        double weightSoFar = 0;
+        double limit = total * quantileLimit(0);
+        double mean = inMeans[0];
+        long weight = inWeights[0];
+        int out = 0;
+        for (int i = 1; i < n; i++) {
+            if (weightSoFar + weight + inWeights[i] <= limit) {
+                weight += inWeights[i];
+                mean += (inMeans[i] - mean) * inWeights[i] / weight;
+            } else {
+                means[out] = mean;
+                weights[out++] = weight;
+                weightSoFar += weight;
+                limit = total * quantileLimit(weightSoFar / total);
+                mean = inMeans[i];
+                weight = inWeights[i];
+            }
+        }
+        means[out] = mean;
+        weights[out++] = weight;
+        centroids = out;
+    }
+
+    // Largest quantile a centroid starting at quantile q may reach: k1(q) = compression / (2 pi) * asin(2q - 1)
+    private double quantileLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+        if (k >= compression / 4) return 1;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    private static double interpolate(double x, double x0, double y0, double x1, double y1) {
+        if (x1 == x0) return y1;
+        return y0 + (x - x0) * (y1 - y0) / (x1 - x0);
+    }
+}
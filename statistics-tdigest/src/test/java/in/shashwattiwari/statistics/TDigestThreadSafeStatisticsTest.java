@@ -0,0 +1,71 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TDigestThreadSafeStatisticsTest extends StatisticsTestBase {
+    @Override
+    protected Statistics createStatistics() {
+        return new TDigestThreadSafeStatistics();
+    }
+
+    @Test
+    public void testQuantilesAndCdf() {
+        QuantileStatistics statistics = new TDigestThreadSafeStatistics();
+        assertEquals(0, statistics.quantile(0.5), "Quantiles should be 0 when no events are recorded.");
+        assertEquals(0, statistics.cdf(10), "cdf should be 0 when no events are recorded.");
+
+        int[] values = shuffled(100_000);
+        statistics.event(values, 0, values.length);
+
+        assertEquals(50_000, statistics.quantile(0.5), 500, "p50 is incorrect.");
+        assertEquals(99_000, statistics.quantile(0.99), 100, "p99 is incorrect.");
+        assertEquals(99_900, statistics.quantile(0.999), 20, "p999 is incorrect.");
+        assertEquals(1, statistics.quantile(0), "p0 should be the minimum.");
+        assertEquals(100_000, statistics.quantile(1), "p100 should be the maximum.");
+
+        assertEquals(0.25, statistics.cdf(25_000), 0.005, "cdf is incorrect.");
+        assertEquals(0.999, statistics.cdf(99_900), 0.0002, "cdf is incorrect in the tail.");
+        assertEquals(0, statistics.cdf(0), "cdf below the minimum should be 0.");
+        assertEquals(1, statistics.cdf(100_000), "cdf at the maximum should be 1.");
+        assertThrows(IllegalArgumentException.class, () -> statistics.quantile(-0.1));
+    }
+
+    @Test
+    public void testMergedDigestsMatchSingleDigest() {
+        int[] values = shuffled(100_000);
+        TDigestThreadSafeStatistics whole = new TDigestThreadSafeStatistics();
+        whole.event(values, 0, values.length);
+
+        TDigestThreadSafeStatistics merged = new TDigestThreadSafeStatistics();
+        for (int shard = 0; shard < 4; shard++) {
+            TDigestThreadSafeStatistics part = new TDigestThreadSafeStatistics();
+            part.event(values, shard * 25_000, 25_000);
+            merged.merge(part);
+        }
+
+        assertEquals(whole.snapshot(), merged.snapshot(), "Merged moments should be exact.");
+        for (double q : new double[]{0.01, 0.5, 0.9, 0.99, 0.999}) {
+            assertEquals(whole.quantile(q), merged.quantile(q), 100_000 * 0.005, "Quantile " + q + " drifted.");
+        }
+    }
+
+    private static int[] shuffled(int n) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i + 1;
+        }
+        Random random = new Random(42);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+}
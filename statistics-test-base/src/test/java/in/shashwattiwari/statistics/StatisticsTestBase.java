@@ -2,9 +2,11 @@ package in.shashwattiwari.statistics;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,6 +50,151 @@ public abstract class StatisticsTestBase {
         assertEquals(25, statistics.variance(), 0.001, "Variance should be correctly calculated.");
     }
 
+    @Test
+    public void testBatchEvents() {
+        Statistics statistics = createStatistics();
+        int[] values = {100, 5, 15, 10, -100};
+        statistics.event(values, 1, 3);
+        assertEquals(5, statistics.min(), "Minimum value should only consider the batch range.");
+        assertEquals(15, statistics.max(), "Maximum value should only consider the batch range.");
+        assertEquals(10, statistics.mean(), 0.001, "Mean should be the average of the batch.");
+        assertEquals(50f / 3, statistics.variance(), 0.001, "Variance should be correctly calculated.");
+
+        statistics.event(values, 0, 0);
+        statistics.event(20);
+        assertEquals(20, statistics.max(), "Single events should combine with batches.");
+        assertEquals(12.5, statistics.mean(), 0.001, "Mean should combine single events and batches.");
+        assertThrows(IndexOutOfBoundsException.class, () -> statistics.event(values, 3, 3));
+    }
+
+    @Test
+    public void testEventsNearIntRange() {
+        Statistics statistics = createStatistics();
+        for (int i = 0; i < 4; i++) {
+            statistics.event(Integer.MAX_VALUE);
+            statistics.event(Integer.MIN_VALUE + 1);
+        }
+        statistics.event(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE + 1}, 0, 2);
+        // ten squares of almost 2^62 overflow a long sum of squares
+        double expected = (double) Integer.MAX_VALUE * Integer.MAX_VALUE;
+        assertEquals(0, statistics.mean(), 0.001, "Mean should not overflow.");
+        assertEquals(expected, statistics.variance(), expected * 1e-6, "Variance should not overflow.");
+        assertEquals(expected, statistics.snapshot().variance(), expected * 1e-6, "Variance should not overflow.");
+
+        Statistics close = createStatistics();
+        close.event(Integer.MAX_VALUE);
+        close.event(Integer.MAX_VALUE - 2);
+        assertEquals(1, close.snapshot().variance(), 0.001, "Variance should not cancel out.");
+    }
+
+    @Test
+    public void testSnapshot() {
+        Statistics statistics = createStatistics();
+        assertEquals(0, statistics.snapshot().count(), "Snapshot should be empty when no events are recorded.");
+        assertEquals(0, statistics.snapshot().min(), "Minimum value should be 0 when no events are recorded.");
+
+        statistics.event(5);
+        statistics.event(15);
+        StatisticsSnapshot snapshot = statistics.snapshot();
+        statistics.event(100);
+
+        assertEquals(2, snapshot.count(), "Snapshot should not change after it is taken.");
+        assertEquals(20, snapshot.sum(), "Sum is incorrect.");
+        assertEquals(250, snapshot.sumOfSquares(), "Sum of squares is incorrect.");
+        assertEquals(5, snapshot.min(), "Minimum value is incorrect.");
+        assertEquals(15, snapshot.max(), "Maximum value is incorrect.");
+        assertEquals(10, snapshot.mean(), 0.001, "Mean is incorrect.");
+        assertEquals(25, snapshot.variance(), 0.001, "Variance is incorrect.");
+        assertEquals(3, statistics.snapshot().count(), "A new snapshot should see later events.");
+    }
+
+    @Test
+    public void testMerge() {
+        Statistics first = createStatistics();
+        Statistics second = createStatistics();
+        first.event(5);
+        first.event(15);
+        second.event(-10);
+        second.event(30);
+
+        first.merge(second);
+        first.merge(createStatistics());
+        assertEquals(4, first.snapshot().count(), "Merged count should include both instances.");
+        assertEquals(-10, first.min(), "Minimum value should consider both instances.");
+        assertEquals(30, first.max(), "Maximum value should consider both instances.");
+        assertEquals(10, first.mean(), 0.001, "Mean should consider both instances.");
+        assertEquals(212.5, first.variance(), 0.001, "Variance should consider both instances.");
+        assertEquals(2, second.snapshot().count(), "The merged instance should not change.");
+
+        StatisticsSnapshot empty = createStatistics().snapshot();
+        Statistics merged = createStatistics();
+        merged.merge(empty.merge(second.snapshot()));
+        assertEquals(second.snapshot(), merged.snapshot(), "Merging into an empty instance should copy the snapshot.");
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        Statistics source = createStatistics();
+        ByteBuffer wire = ByteBuffer.allocateDirect(2 * StatisticsCodec.MAX_ENCODED_SIZE);
+        StatisticsCodec.encode(source.snapshot(), wire);
+        source.event(Integer.MIN_VALUE + 1);
+        source.event(Integer.MAX_VALUE);
+        source.event(0);
+        StatisticsCodec.encode(source.snapshot(), wire);
+        wire.flip();
+
+        Statistics empty = createStatistics();
+        StatisticsCodec.decodeInto(wire, empty);
+        assertEquals(0, empty.snapshot().count(), "An empty snapshot should decode as empty.");
+        Statistics target = createStatistics();
+        StatisticsCodec.decodeInto(wire, target);
+        assertEquals(source.snapshot(), target.snapshot(), "Decoded snapshot should equal the encoded one.");
+        assertFalse(wire.hasRemaining(), "Decoding should consume exactly the encoded bytes.");
+
+        byte[] bytes = StatisticsCodec.encode(source.snapshot());
+        assertEquals(StatisticsCodec.encodedSize(source.snapshot()), bytes.length, "Encoded size is incorrect.");
+        assertThrows(IllegalArgumentException.class,
+                () -> StatisticsCodec.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1)));
+        bytes[0]++;
+        assertThrows(IllegalArgumentException.class, () -> StatisticsCodec.decode(ByteBuffer.wrap(bytes)));
+    }
+
+    /**
+     * Records {@link Integer#MAX_VALUE} from several threads while reading, and checks that every snapshot
+     * describes whole events. Each square carries into the high half of the sum of squares every few events, so a
+     * torn read of the two halves shows up as an error of {@code 2^64}.
+     */
+    protected static void assertConsistentUnderWrites(Statistics statistics) throws InterruptedException {
+        int numThreads = 4;
+        int numEventsPerThread = 20_000;
+        long square = (long) Integer.MAX_VALUE * Integer.MAX_VALUE;
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            executorService.submit(() -> {
+                try {
+                    for (int j = 0; j < numEventsPerThread; j++) {
+                        statistics.event(Integer.MAX_VALUE);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        do {
+            StatisticsSnapshot snapshot = statistics.snapshot();
+            long count = snapshot.count();
+            assertEquals(count * Integer.MAX_VALUE, snapshot.sum(), "Sum should match the count.");
+            assertEquals(count * square, snapshot.sumOfSquares(), "Sum of squares should match the count.");
+            assertEquals(Math.unsignedMultiplyHigh(count, square), snapshot.sumOfSquaresHigh(),
+                    "Sum of squares should match the count.");
+        } while (!latch.await(0, TimeUnit.MILLISECONDS));
+        executorService.shutdown();
+
+        assertEquals((long) numThreads * numEventsPerThread, statistics.snapshot().count(), "Count is incorrect.");
+    }
+
     @Test
     public void testConcurrentUpdates() throws InterruptedException {
         Statistics statistics = createStatistics();
@@ -0,0 +1,249 @@
+package in.shashwattiwari.statistics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code ThreadLocalThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface.
+ *
+ * <p>Every writer thread owns a private accumulator, reached through a {@link ThreadLocal}. Since only the owner
+ * ever writes to it, {@code event(int n)} needs no atomic read-modify-write instructions and no lock: the count,
+ * sum, sum of squares, minimum and maximum are updated with plain arithmetic. No cache line is shared between
+ * writers, so the write path does not generate any cross-core coherence traffic.
+ *
+ * <p>Readers fold all registered accumulators together. Each accumulator is guarded by a single-writer sequence
+ * counter (a seqlock), so a reader always observes a consistent per-thread partial and retries if it raced with
+ * the owner.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>Accumulators only hold a weak reference to their owner thread. When the owner has terminated, its
+ *   partial is folded into a retired total and the accumulator is dropped, so short-lived threads do not leak.</li>
+ *   <li>Dead accumulators are swept on every read and, opportunistically, whenever a new thread registers.</li>
+ *   <li>Readers serialize among themselves on a {@link ReentrantLock}; writers never take it.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     Statistics stats = new ThreadLocalThreadSafeStatistics();
+ *     stats.event(5);
+ *     stats.event(10);
+ *     System.out.println("Mean: " + stats.mean());
+ *     System.out.println("Variance: " + stats.variance());
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * <ul>
+ *   <li>Reads are O(number of writer threads), which makes this implementation a poor fit for workloads that
+ *   write from very many short-lived threads and read constantly.</li>
+ *   <li>The first event of each thread pays for a {@link ThreadLocal} initialisation and a registration.</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class ThreadLocalThreadSafeStatistics implements Statistics {
+
+    private static final class Accumulator {
+
+        private static final VarHandle VERSION;
+
+        static {
+            try {
+                VERSION = MethodHandles.lookup().findVarHandle(Accumulator.class, "version", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final WeakReference<Thread> owner;
+
+        // odd while the owner is writing, even otherwise
+        private long version;
+
+        // written by the owner thread only, read by others under the version check
+        private long count;
+        private long sum;
+        private long sumOfSquaresHigh;
+        private long sumOfSquares;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+
+        Accumulator(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        void add(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+            long v = version;
+            VERSION.setOpaque(this, v + 1);
+            VarHandle.storeStoreFence();
+
+            this.count += count;
+            this.sum += sum;
+            this.sumOfSquaresHigh += sumOfSquaresHigh + Int128.carry(this.sumOfSquares, sumOfSquares);
+            this.sumOfSquares += sumOfSquares;
+            if (min < this.min) {
+                this.min = min;
+            }
+            if (max > this.max) {
+                this.max = max;
+            }
+
+            VERSION.setRelease(this, v + 2);
+        }
+
+        /**
+         * Adds a consistent copy of this accumulator to {@code totals}.
+         */
+        void readInto(Totals totals) {
+            while (true) {
+                long before = (long) VERSION.getAcquire(this);
+                if ((before & 1) == 0) {
+                    long count = this.count;
+                    long sum = this.sum;
+                    long sumOfSquaresHigh = this.sumOfSquaresHigh;
+                    long sumOfSquares = this.sumOfSquares;
+                    int min = this.min;
+                    int max = this.max;
+                    VarHandle.loadLoadFence();
+                    if (before == (long) VERSION.getOpaque(this)) {
+                        totals.add(count, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+                        return;
+                    }
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        boolean isRetired() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    // Mutable running total, only touched while holding the fold lock
+    private static final class Totals {
+        long count;
+        long sum;
+        long sumOfSquaresHigh;
+        long sumOfSquares;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        void add(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+            this.count += count;
+            this.sum += sum;
+            this.sumOfSquaresHigh += sumOfSquaresHigh + Int128.carry(this.sumOfSquares, sumOfSquares);
+            this.sumOfSquares += sumOfSquares;
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+        }
+
+        void add(Totals other) {
+            add(other.count, other.sum, other.sumOfSquaresHigh, other.sumOfSquares, other.min, other.max);
+        }
+    }
+
+    private final ThreadLocal<Accumulator> local = ThreadLocal.withInitial(this::register);
+    private final Set<Accumulator> live = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock foldLock = new ReentrantLock();
+
+    // Partials of threads that have terminated, guarded by foldLock
+    private final Totals retired = new Totals();
+
+    @Override
+    public void event(int n) {
+        local.get().add(1, n, 0, (long) n * n, n, n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        local.get().add(snapshot.count(), snapshot.sum(), snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares(),
+                snapshot.min(), snapshot.max());
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Each thread's partial is read consistently, but partials of different threads are read one after the other.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        Totals totals = fold();
+        return new StatisticsSnapshot(totals.count, totals.sum, totals.sumOfSquaresHigh, totals.sumOfSquares,
+                totals.min, totals.max);
+    }
+
+    private Accumulator register() {
+        Accumulator accumulator = new Accumulator(Thread.currentThread());
+        live.add(accumulator);
+        // piggyback on registration to reclaim dead threads even if nobody ever reads
+        if (foldLock.tryLock()) {
+            try {
+                retireDead();
+            } finally {
+                foldLock.unlock();
+            }
+        }
+        return accumulator;
+    }
+
+    /**
+     * Combines the retired total with every live accumulator.
+     */
+    private Totals fold() {
+        foldLock.lock();
+        try {
+            retireDead();
+            Totals totals = new Totals();
+            totals.add(retired);
+            for (Accumulator accumulator : live) {
+                accumulator.readInto(totals);
+            }
+            return totals;
+        } finally {
+            foldLock.unlock();
+        }
+    }
+
+    // Must be called with foldLock held
+    private void retireDead() {
+        for (Iterator<Accumulator> it = live.iterator(); it.hasNext(); ) {
+            Accumulator accumulator = it.next();
+            if (accumulator.isRetired()) {
+                accumulator.readInto(retired);
+                it.remove();
+            }
+        }
+    }
+}
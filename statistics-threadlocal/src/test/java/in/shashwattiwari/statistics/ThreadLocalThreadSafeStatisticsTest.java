@@ -0,0 +1,30 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ThreadLocalThreadSafeStatisticsTest extends StatisticsTestBase {
+    @Override
+    protected Statistics createStatistics() {
+        return new ThreadLocalThreadSafeStatistics();
+    }
+
+    @Test
+    public void testEventsOfTerminatedThreadsAreRetained() throws InterruptedException {
+        Statistics statistics = createStatistics();
+
+        for (int i = 1; i <= 4; i++) {
+            final int value = i;
+            Thread writer = new Thread(() -> statistics.event(value));
+            writer.start();
+            writer.join();
+            // reading after every thread forces its accumulator into the retired total
+            assertEquals(value, statistics.max(), "Events of terminated threads must not be lost.");
+        }
+
+        assertEquals(1, statistics.min(), "Minimum value is incorrect.");
+        assertEquals(2.5, statistics.mean(), 0.001, "Mean is incorrect.");
+        assertEquals(1.25, statistics.variance(), 0.001, "Variance is incorrect.");
+    }
+}
@@ -0,0 +1,200 @@
+package in.shashwattiwari.statistics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * {@code VarHandleThreadSafeStatistics} provides a lock-free, allocation-free implementation of the
+ * {@link Statistics} interface.
+ *
+ * <p>Unlike {@code AtomicThreadSafeStatistics}, which swaps an immutable holder object on every event, this
+ * implementation keeps the count, sum, sum of squares, minimum and maximum in primitive fields and updates them
+ * in place through {@link VarHandle} atomics: {@code getAndAdd} for the running totals and compare-and-set loops
+ * for the extremes. {@code event(int n)} therefore never allocates and produces no garbage, regardless of the
+ * event rate.
+ *
+ * <p>The sum of squares is a 128-bit integer kept in a low and a high field. The value {@code getAndAdd} returns
+ * for the low half tells whether the addition carried, so the high half stays exact without a wider
+ * compare-and-set, and is only written by the rare updates that wrap the low half around.
+ *
+ * <h2>Consistent Reads:</h2>
+ * Updating six fields is not a single atomic step, so every event is bracketed by two counters:
+ * {@code started} is incremented before the fields are touched and {@code count} after. A reader first reads
+ * {@code count}, then {@code started}; if both are equal no event was in flight at that moment. It then reads
+ * the fields and checks that {@code started} did not move. If validation succeeds, the values describe exactly
+ * {@code count} events.
+ *
+ * <p>Under sustained write pressure validation can keep failing. After {@value #MAX_OPTIMISTIC_READS} attempts
+ * a reader raises a flag that asks new writers to wait before they increment {@code started}, and retries until
+ * the events already in flight have completed. A writer waits for the flag at most {@value #MAX_WRITER_WAITS}
+ * spins and then proceeds, so a reader descheduled while holding it cannot stall writers, and updates stay
+ * lock-free; the reader merely keeps retrying. A read always describes a consistent set of events.
+ *
+ * <h2>References:</h2>
+ * <ul>
+ *   <li>Java VarHandle documentation: {@link java.lang.invoke.VarHandle}.</li>
+ *   <li>JEP 193, Variable Handles: <a href="https://openjdk.org/jeps/193">openjdk.org</a>.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     Statistics stats = new VarHandleThreadSafeStatistics();
+ *     stats.event(5);
+ *     stats.event(10);
+ *     System.out.println("Mean: " + stats.mean());
+ *     System.out.println("Variance: " + stats.variance());
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * Each event costs a handful of atomic instructions on the same object, so this implementation still
+ * serializes writers on one cache line. It removes the allocation and the retry storms of a single
+ * compare-and-set over an immutable holder, but it does not scale like a striped implementation.
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class VarHandleThreadSafeStatistics implements Statistics {
+
+    static final int MAX_OPTIMISTIC_READS = 256;
+    static final int MAX_WRITER_WAITS = 1024;
+
+    private static final VarHandle BLOCKING_READERS;
+    private static final VarHandle STARTED;
+    private static final VarHandle COUNT;
+    private static final VarHandle SUM;
+    private static final VarHandle SUM_OF_SQUARES_HIGH;
+    private static final VarHandle SUM_OF_SQUARES;
+    private static final VarHandle MIN;
+    private static final VarHandle MAX;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            BLOCKING_READERS = lookup.findVarHandle(VarHandleThreadSafeStatistics.class, "blockingReaders",
+                    int.class);
+            STARTED = lookup.findVarHandle(VarHandleThreadSafeStatistics.class, "started", long.class);
+            COUNT = lookup.findVarHandle(VarHandleThreadSafeStatistics.class, "count", long.class);
+            SUM = lookup.findVarHandle(VarHandleThreadSafeStatistics.class, "sum", long.class);
+            SUM_OF_SQUARES_HIGH = lookup.findVarHandle(VarHandleThreadSafeStatistics.class, "sumOfSquaresHigh",
+                    long.class);
+            SUM_OF_SQUARES = lookup.findVarHandle(VarHandleThreadSafeStatistics.class, "sumOfSquares", long.class);
+            MIN = lookup.findVarHandle(VarHandleThreadSafeStatistics.class, "min", int.class);
+            MAX = lookup.findVarHandle(VarHandleThreadSafeStatistics.class, "max", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // readers that gave up on optimistic reads, new events briefly wait while it is not 0
+    private volatile int blockingReaders;
+    // events that began updating the fields
+    private volatile long started;
+    // events that finished updating the fields
+    private volatile long count;
+    private volatile long sum;
+    private volatile long sumOfSquaresHigh;
+    private volatile long sumOfSquares;
+    private volatile int min = Integer.MAX_VALUE;
+    private volatile int max = Integer.MIN_VALUE;
+
+    @Override
+    public void event(int n) {
+        publish(1, n, 0, (long) n * n, n, n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        publish(snapshot.count(), snapshot.sum(), snapshot.sumOfSquaresHigh(), snapshot.sumOfSquares(),
+                snapshot.min(), snapshot.max());
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Reads all fields, retrying until no event was in flight while they were read. Holds new writers off if the
+     * optimistic reads keep failing.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            StatisticsSnapshot snapshot = tryRead();
+            if (snapshot != null) return snapshot;
+            Thread.onSpinWait();
+        }
+        BLOCKING_READERS.getAndAdd(this, 1);
+        try {
+            StatisticsSnapshot snapshot;
+            while ((snapshot = tryRead()) == null) {
+                Thread.onSpinWait();
+            }
+            return snapshot;
+        } finally {
+            BLOCKING_READERS.getAndAdd(this, -1);
+        }
+    }
+
+    // null if an event was in flight while the fields were read
+    private StatisticsSnapshot tryRead() {
+        long completed = count;
+        long began = started;
+        int min = this.min;
+        int max = this.max;
+        long sum = this.sum;
+        long sumOfSquares = this.sumOfSquares;
+        long sumOfSquaresHigh = this.sumOfSquaresHigh;
+        if (completed != began || began != started) return null;
+
+        return new StatisticsSnapshot(completed, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+    }
+
+    private void publish(long count, long sum, long sumOfSquaresHigh, long sumOfSquares, int min, int max) {
+        // bounded, so a reader descheduled while holding writers off cannot stall them
+        for (int spins = 0; spins < MAX_WRITER_WAITS && blockingReaders != 0; spins++) {
+            Thread.onSpinWait();
+        }
+        STARTED.getAndAdd(this, count);
+
+        SUM.getAndAdd(this, sum);
+        // the carry out of the low half follows from the value it was added to, no retry needed
+        long low = (long) SUM_OF_SQUARES.getAndAdd(this, sumOfSquares);
+        long high = sumOfSquaresHigh + Int128.carry(low, sumOfSquares);
+        if (high != 0) {
+            SUM_OF_SQUARES_HIGH.getAndAdd(this, high);
+        }
+
+        int current;
+        while (min < (current = this.min) && !MIN.weakCompareAndSet(this, current, min)) {
+            Thread.onSpinWait();
+        }
+        while (max > (current = this.max) && !MAX.weakCompareAndSet(this, current, max)) {
+            Thread.onSpinWait();
+        }
+
+        COUNT.getAndAdd(this, count);
+    }
+}
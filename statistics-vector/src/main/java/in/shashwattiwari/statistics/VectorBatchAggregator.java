@@ -0,0 +1,90 @@
+package in.shashwattiwari.statistics;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Objects;
+
+/**
+ * {@code VectorBatchAggregator} is a SIMD {@link BatchAggregator} built on the incubating Vector API.
+ *
+ * <p>Each iteration loads as many ints as fit into the lanes of the preferred {@code long} species, keeps running
+ * lane-wise minima and maxima on the ints, and widens them to longs to accumulate the sum and the sum of squares
+ * without losing the upper 32 bits. The lanes are reduced once at the end and the remainder of the batch that
+ * does not fill a whole vector is handled by a scalar tail loop.
+ *
+ * <p>Each lane also counts the unsigned carries out of its sum of squares, so the lanes add up to the same 128-bit
+ * sum of squares as the scalar loop. 128-bit addition is associative, so the result is bit-for-bit identical to
+ * {@link ScalarBatchAggregator} regardless of lane order.
+ *
+ * <h2>Enabling:</h2>
+ * The class is registered in {@code META-INF/services/in.shashwattiwari.statistics.BatchAggregator}. It is only
+ * picked up by {@link BatchAggregator#getInstance()} when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}; otherwise loading fails and the scalar kernel is used.
+ *
+ * <h2>References:</h2>
+ * <ul>
+ *   <li>JEP 469, Vector API: <a href="https://openjdk.org/jeps/469">openjdk.org</a>.</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+public final class VectorBatchAggregator implements BatchAggregator {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    // Same lane count as LONGS, so one int load widens into exactly one long vector
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    @Override
+    public StatisticsSnapshot aggregate(int[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+
+        IntVector minimums = IntVector.broadcast(INTS, Integer.MAX_VALUE);
+        IntVector maximums = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+        LongVector sums = LongVector.zero(LONGS);
+        LongVector squares = LongVector.zero(LONGS);
+        // per lane carries out of squares, the high halves of the 128-bit lane sums
+        LongVector carries = LongVector.zero(LONGS);
+
+        int i = offset;
+        int upperBound = offset + INTS.loopBound(length);
+        for (; i < upperBound; i += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, values, i);
+            minimums = minimums.min(v);
+            maximums = maximums.max(v);
+
+            LongVector wide = (LongVector) v.convertShape(VectorOperators.I2L, LONGS, 0);
+            sums = sums.add(wide);
+            LongVector added = squares.add(wide.mul(wide));
+            carries = carries.add(1, added.compare(VectorOperators.UNSIGNED_LT, squares));
+            squares = added;
+        }
+
+        int min = minimums.reduceLanes(VectorOperators.MIN);
+        int max = maximums.reduceLanes(VectorOperators.MAX);
+        long sum = sums.reduceLanes(VectorOperators.ADD);
+        long sumOfSquaresHigh = carries.reduceLanes(VectorOperators.ADD);
+        long sumOfSquares = 0;
+        for (long lane : squares.toArray()) {
+            sumOfSquaresHigh += Int128.carry(sumOfSquares, lane);
+            sumOfSquares += lane;
+        }
+
+        // scalar tail
+        for (; i < offset + length; i++) {
+            int n = values[i];
+            sum += n;
+            long square = (long) n * n;
+            sumOfSquaresHigh += Int128.carry(sumOfSquares, square);
+            sumOfSquares += square;
+            min = Math.min(min, n);
+            max = Math.max(max, n);
+        }
+        return new StatisticsSnapshot(length, sum, sumOfSquaresHigh, sumOfSquares, min, max);
+    }
+}
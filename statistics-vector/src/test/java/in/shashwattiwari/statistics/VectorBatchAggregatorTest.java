@@ -0,0 +1,47 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorBatchAggregatorTest {
+
+    private final BatchAggregator scalar = new ScalarBatchAggregator();
+    private final BatchAggregator vector = new VectorBatchAggregator();
+
+    @Test
+    public void testServiceLoaderPicksVectorKernel() {
+        assertInstanceOf(VectorBatchAggregator.class, BatchAggregator.getInstance(),
+                "The vector kernel should be used when jdk.incubator.vector is enabled.");
+    }
+
+    @Test
+    public void testMatchesScalarKernel() {
+        Random random = new Random(42);
+        int[] values = random.ints(1_000).toArray();
+        values[17] = Integer.MIN_VALUE;
+        values[500] = Integer.MAX_VALUE;
+
+        for (int offset = 0; offset < 8; offset++) {
+            for (int length : new int[]{0, 1, 3, 7, 8, 9, 31, 64, 257, 900}) {
+                StatisticsSnapshot expected = scalar.aggregate(values, offset, length);
+                StatisticsSnapshot actual = vector.aggregate(values, offset, length);
+                String range = "offset " + offset + ", length " + length;
+                assertEquals(expected.count(), actual.count(), "Count differs for " + range);
+                assertEquals(expected.sum(), actual.sum(), "Sum differs for " + range);
+                assertEquals(expected.sumOfSquares(), actual.sumOfSquares(), "Sum of squares differs for " + range);
+                assertEquals(expected.sumOfSquaresHigh(), actual.sumOfSquaresHigh(),
+                        "Sum of squares differs for " + range);
+                assertEquals(expected.min(), actual.min(), "Minimum differs for " + range);
+                assertEquals(expected.max(), actual.max(), "Maximum differs for " + range);
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsOutOfBoundsRange() {
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.aggregate(new int[4], 2, 3));
+    }
+}
@@ -0,0 +1,593 @@
+package in.shashwattiwari.statistics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * {@code EventLog} is a segmented write-ahead log of events, from which any {@link Statistics} provider can be
+ * rebuilt after a crash.
+ *
+ * <p>Appending threads copy their events into a shared in-memory batch. A single writer thread swaps the full
+ * batch for an empty one, encodes it as one frame and writes it to the current segment. Every event appended
+ * while a frame is being written joins the next one, so under load many appends share one write and, in
+ * {@link Durability#SYNC} mode, one {@code fsync}: a group commit. Merged snapshots are logged too; since the
+ * statistics are order independent, all snapshots merged during a batch are folded into one.
+ *
+ * <h2>File Format:</h2>
+ * The directory holds numbered segment files of a fixed size, filled with zeros when created and then with frames:
+ * <pre>
+ *     int      payload length in bytes, 0 past the last frame
+ *     int      CRC32C of the payload
+ *     record   {@link StatisticsCodec} record of the snapshots merged during the batch
+ *     varint   zig-zag event, repeated until the end of the payload
+ * </pre>
+ * A {@code checkpoint} file holds the segment and offset replay starts from, the {@link StatisticsCodec} record of
+ * everything logged before that position and a CRC32C. It is replaced atomically by renaming a new file over it.
+ *
+ * <h2>Checkpoints:</h2>
+ * When a frame does not fit in the current segment, the writer creates the next segment, points the checkpoint at
+ * its start and deletes all older segments. Replay therefore reads at most one segment of frames, however long
+ * the log has been running. Closing the log checkpoints its end, so a clean restart replays nothing.
+ *
+ * <h2>Recovery:</h2>
+ * Opening a log scans the frames after the checkpoint and resumes after the last one that is complete and passes
+ * its checksum. The rest of that segment, which may hold a frame torn by a crash, is filled with zeros again, and
+ * the checkpoint is moved to the recovered end before older segments are deleted.
+ * {@link #replay(Path, Statistics)} merges the checkpoint into a provider and feeds it the frames in batches of
+ * up to {@value #REPLAY_BATCH} events through {@link Statistics#event(int[], int, int)}. Only the events after
+ * the checkpoint reach quantile sketches individually; the checkpoint itself carries moments only.
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     try (EventLog log = new EventLog(Path.of("wal"), EventLog.DEFAULT_SEGMENT_SIZE, EventLog.Durability.SYNC)) {
+ *         log.append(5);
+ *     }
+ *     Statistics stats = new HistogramThreadSafeStatistics();
+ *     EventLog.replay(Path.of("wal"), stats);
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * In {@link Durability#SYNC} mode an append costs a storage device flush, shared by all appends of its batch, so
+ * throughput grows with the number of appending threads. In {@link Durability#ASYNC} mode an append only costs a
+ * copy into the batch; a crash loses the frames the operating system had not written back yet. Appending blocks
+ * while the batch is full, which bounds the memory of the log at {@value #BATCH_SIZE} buffered events.
+ *
+ * @author Shashwat Tiwari
+ */
+
+public final class EventLog implements AutoCloseable {
+
+    /**
+     * When an append returns relative to its event reaching the storage device.
+     */
+    public enum Durability {
+        /**
+         * Appends return once their frame is written and forced to the storage device, one {@code fsync} per frame.
+         */
+        SYNC,
+        /**
+         * Appends return once their event is buffered. Frames are written in the background and only forced to the
+         * storage device at checkpoints and on close.
+         */
+        ASYNC
+    }
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    static final int BATCH_SIZE = 4096;
+    static final int REPLAY_BATCH = 64 * 1024;
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_PAYLOAD_SIZE = StatisticsCodec.MAX_ENCODED_SIZE + BATCH_SIZE * 5;
+    private static final int CHECKPOINT_SIZE = 2 * Long.BYTES + StatisticsCodec.MAX_ENCODED_SIZE + Integer.BYTES;
+    private static final int FILL_SIZE = 64 * 1024;
+
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String LOCK = "lock";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private record Position(long segment, long offset) {
+    }
+
+    private record Checkpoint(Position position, StatisticsSnapshot snapshot) {
+    }
+
+    /**
+     * Receives the replayed snapshots and events, in batches.
+     */
+    @FunctionalInterface
+    private interface BatchSink {
+        void accept(StatisticsSnapshot merged, int[] values, int length);
+    }
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Durability durability;
+    private final FileChannel lockChannel;
+    private final FileLock directoryLock;
+
+    // the batch being filled, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition batchTaken = lock.newCondition();
+    private final Condition batchWritten = lock.newCondition();
+    private int[] pending = new int[BATCH_SIZE];
+    private int pendingSize;
+    private StatisticsSnapshot pendingMerged = StatisticsSnapshot.EMPTY;
+    private long pendingBatch = 1;
+    private long writtenBatch;
+    private boolean closing;
+    private IOException failure;
+
+    // owned by the writer thread once it is started
+    private int[] spare = new int[BATCH_SIZE];
+    private final ByteBuffer frame = ByteBuffer.allocateDirect(HEADER_SIZE + MAX_PAYLOAD_SIZE);
+    private final CRC32C crc = new CRC32C();
+    private FileChannel segment;
+    private long segmentIndex;
+    private long position;
+    private StatisticsSnapshot written;
+
+    private final Thread writer;
+
+    /**
+     * Opens the log in {@code directory}, creating it if needed, and recovers its end.
+     *
+     * @throws IllegalArgumentException if {@code segmentSize} cannot hold a full frame
+     * @throws UncheckedIOException     if the directory cannot be used, is open elsewhere or holds a corrupt
+     *                                  checkpoint
+     */
+    public EventLog(Path directory, long segmentSize, Durability durability) {
+        this(directory, segmentSize, durability, null);
+    }
+
+    /**
+     * Opens the log as {@link #EventLog(Path, long, Durability)} does and replays it into {@code target}, if not
+     * {@code null}, before accepting appends.
+     */
+    EventLog(Path directory, long segmentSize, Durability durability, Statistics target) {
+        if (segmentSize < HEADER_SIZE + MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + (HEADER_SIZE + MAX_PAYLOAD_SIZE)
+                    + " bytes: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.durability = Objects.requireNonNull(durability);
+
+        FileChannel lockChannel = null;
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            this.directoryLock = lock(lockChannel, directory);
+
+            Checkpoint checkpoint = readCheckpoint(directory);
+            written = checkpoint.snapshot();
+            if (target != null) {
+                target.merge(written);
+            }
+            Position end = scan(directory, checkpoint.position(), (merged, values, length) -> {
+                written = written.merge(merged).merge(BatchAggregator.getInstance().aggregate(values, 0, length));
+                if (target != null) {
+                    target.merge(merged);
+                    target.event(values, 0, length);
+                }
+            });
+            openSegment(end.segment(), end.offset());
+            // the checkpoint on disk may still point into the segments about to be deleted
+            writeCheckpoint(end);
+            deleteSegmentsBefore(end.segment());
+        } catch (IOException e) {
+            closeQuietly(segment);
+            closeQuietly(lockChannel);
+            throw new UncheckedIOException(e);
+        }
+        this.lockChannel = lockChannel;
+        this.writer = Thread.ofPlatform().name("statistics-event-log").daemon().start(this::run);
+    }
+
+    /**
+     * Appends one event. Blocks while the batch is full and, in {@link Durability#SYNC} mode, until the event is
+     * on the storage device.
+     *
+     * @throws UncheckedIOException  if the log failed to write an earlier frame
+     * @throws IllegalStateException if the log is closed
+     */
+    public void append(int value) {
+        lock.lock();
+        try {
+            awaitRoom();
+            if (pendingSize == 0 && pendingMerged.count() == 0) {
+                batchReady.signal();
+            }
+            pending[pendingSize++] = value;
+            awaitDurable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends {@code length} events of {@code values}, starting at {@code offset}, as {@link #append(int)} does.
+     * A batch larger than the free room of the current frame is split across frames.
+     */
+    public void append(int[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        if (length == 0) return;
+
+        lock.lock();
+        try {
+            while (length > 0) {
+                awaitRoom();
+                if (pendingSize == 0 && pendingMerged.count() == 0) {
+                    batchReady.signal();
+                }
+                int copied = Math.min(length, pending.length - pendingSize);
+                System.arraycopy(values, offset, pending, pendingSize, copied);
+                pendingSize += copied;
+                offset += copied;
+                length -= copied;
+            }
+            awaitDurable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a merged snapshot, as {@link #append(int)} does.
+     */
+    public void append(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        lock.lock();
+        try {
+            checkOpen();
+            if (pendingSize == 0 && pendingMerged.count() == 0) {
+                batchReady.signal();
+            }
+            pendingMerged = pendingMerged.merge(snapshot);
+            awaitDurable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the buffered events, checkpoints the end of the log and releases it. Appends still running may or
+     * may not be included.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closing) return;
+            closing = true;
+            batchReady.signal();
+            batchTaken.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            directoryLock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Rebuilds {@code target} from the log in {@code directory}, which must not be open for writing.
+     *
+     * @throws UncheckedIOException if the directory cannot be read or holds a corrupt checkpoint
+     */
+    public static void replay(Path directory, Statistics target) {
+        try {
+            Checkpoint checkpoint = readCheckpoint(directory);
+            target.merge(checkpoint.snapshot());
+            scan(directory, checkpoint.position(), (merged, values, length) -> {
+                target.merge(merged);
+                target.event(values, 0, length);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                int length;
+                StatisticsSnapshot merged;
+                long batch;
+                lock.lock();
+                try {
+                    while (pendingSize == 0 && pendingMerged.count() == 0 && !closing) {
+                        batchReady.awaitUninterruptibly();
+                    }
+                    if (pendingSize == 0 && pendingMerged.count() == 0) break;
+
+                    int[] full = pending;
+                    pending = spare;
+                    spare = full;
+                    length = pendingSize;
+                    merged = pendingMerged;
+                    batch = pendingBatch++;
+                    pendingSize = 0;
+                    pendingMerged = StatisticsSnapshot.EMPTY;
+                    batchTaken.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                write(merged, spare, length);
+
+                lock.lock();
+                try {
+                    writtenBatch = batch;
+                    batchWritten.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            segment.force(true);
+            writeCheckpoint(new Position(segmentIndex, position));
+            segment.close();
+        } catch (IOException e) {
+            closeQuietly(segment);
+            lock.lock();
+            try {
+                failure = e;
+                batchTaken.signalAll();
+                batchWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(StatisticsSnapshot merged, int[] values, int length) throws IOException {
+        frame.clear().position(HEADER_SIZE);
+        StatisticsCodec.encode(merged, frame);
+        for (int i = 0; i < length; i++) {
+            StatisticsCodec.putVarLong(frame, StatisticsCodec.zigZag(values[i]));
+        }
+        int payload = frame.position() - HEADER_SIZE;
+        crc.reset();
+        crc.update(frame.slice(HEADER_SIZE, payload));
+        frame.putInt(0, payload).putInt(Integer.BYTES, (int) crc.getValue()).flip();
+
+        if (position + frame.remaining() > segmentSize) {
+            roll();
+        }
+        while (frame.hasRemaining()) {
+            position += segment.write(frame, position);
+        }
+        if (durability == Durability.SYNC) {
+            segment.force(false);
+        }
+        written = written.merge(merged).merge(BatchAggregator.getInstance().aggregate(values, 0, length));
+    }
+
+    // Moves on to the next segment and checkpoints its start, making all older segments obsolete
+    private void roll() throws IOException {
+        segment.force(false);
+        segment.close();
+        openSegment(segmentIndex + 1, 0);
+        writeCheckpoint(new Position(segmentIndex, 0));
+        deleteSegmentsBefore(segmentIndex);
+    }
+
+    // Opens a segment for appending at offset, filling the rest of it with zeros
+    private void openSegment(long index, long offset) throws IOException {
+        segment = FileChannel.open(segmentFile(directory, index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer zeros = ByteBuffer.allocate(FILL_SIZE);
+        for (long at = offset; at < segmentSize; ) {
+            zeros.clear().limit((int) Math.min(FILL_SIZE, segmentSize - at));
+            while (zeros.hasRemaining()) {
+                at += segment.write(zeros, at);
+            }
+        }
+        segment.force(true);
+        segmentIndex = index;
+        position = offset;
+    }
+
+    private void writeCheckpoint(Position start) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        buffer.putLong(start.segment()).putLong(start.offset());
+        StatisticsCodec.encode(written, buffer);
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) checksum.getValue()).flip();
+
+        Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteSegmentsBefore(long index) throws IOException {
+        for (long obsolete : segments(directory)) {
+            if (obsolete < index) {
+                Files.deleteIfExists(segmentFile(directory, obsolete));
+            }
+        }
+    }
+
+    private void awaitRoom() {
+        while (pendingSize == pending.length && failure == null && !closing) {
+            batchTaken.awaitUninterruptibly();
+        }
+        checkOpen();
+    }
+
+    private void awaitDurable() {
+        if (durability == Durability.ASYNC) return;
+
+        long batch = pendingBatch;
+        while (writtenBatch < batch && failure == null) {
+            batchWritten.awaitUninterruptibly();
+        }
+        if (writtenBatch < batch) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        if (closing) {
+            throw new IllegalStateException("Event log is closed");
+        }
+    }
+
+    private static Checkpoint readCheckpoint(Path directory) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(directory.resolve(CHECKPOINT));
+        } catch (NoSuchFileException e) {
+            return new Checkpoint(new Position(0, 0), StatisticsSnapshot.EMPTY);
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            Position start = new Position(buffer.getLong(), buffer.getLong());
+            StatisticsSnapshot snapshot = StatisticsCodec.decode(buffer);
+            CRC32C checksum = new CRC32C();
+            checksum.update(bytes, 0, buffer.position());
+            if (buffer.getInt() != (int) checksum.getValue()) {
+                throw new IOException(directory + " holds a corrupt checkpoint: checksum mismatch");
+            }
+            return new Checkpoint(start, snapshot);
+        } catch (RuntimeException e) {
+            throw new IOException(directory + " holds a corrupt checkpoint", e);
+        }
+    }
+
+    /**
+     * Feeds {@code sink} the frames from {@code start} on, in batches of up to {@value #REPLAY_BATCH} events, and
+     * returns the position after the last valid frame.
+     */
+    private static Position scan(Path directory, Position start, BatchSink sink) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        ByteBuffer payload = ByteBuffer.allocate(MAX_PAYLOAD_SIZE);
+        CRC32C checksum = new CRC32C();
+        int[] values = new int[REPLAY_BATCH];
+        int buffered = 0;
+        StatisticsSnapshot merged = StatisticsSnapshot.EMPTY;
+
+        Position end = start;
+        for (long index : segments(directory)) {
+            if (index < start.segment()) continue;
+
+            long offset = index == start.segment() ? start.offset() : 0;
+            try (FileChannel channel = FileChannel.open(segmentFile(directory, index), StandardOpenOption.READ)) {
+                while (readFully(channel, header.clear(), offset)) {
+                    int size = header.getInt(0);
+                    if (size <= 0 || size > MAX_PAYLOAD_SIZE
+                            || !readFully(channel, payload.clear().limit(size), offset + HEADER_SIZE)) break;
+
+                    checksum.reset();
+                    checksum.update(payload.flip());
+                    if ((int) checksum.getValue() != header.getInt(Integer.BYTES)) break;
+
+                    if (buffered + size > values.length) {
+                        sink.accept(merged, values, buffered);
+                        buffered = 0;
+                        merged = StatisticsSnapshot.EMPTY;
+                    }
+                    payload.rewind();
+                    merged = merged.merge(StatisticsCodec.decode(payload));
+                    while (payload.hasRemaining()) {
+                        values[buffered++] = (int) StatisticsCodec.unZigZag(StatisticsCodec.getVarLong(payload));
+                    }
+                    offset += HEADER_SIZE + size;
+                }
+            }
+            end = new Position(index, offset);
+        }
+        if (buffered > 0 || merged.count() != 0) {
+            sink.accept(merged, values, buffered);
+        }
+        return end;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) return false;
+            offset += read;
+        }
+        return true;
+    }
+
+    private static long[] segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches("\\d{20}" + SEGMENT_SUFFIX))
+                    .mapToLong(name -> Long.parseLong(name.substring(0, 20)))
+                    .sorted()
+                    .toArray();
+        }
+    }
+
+    private static Path segmentFile(Path directory, long index) {
+        return directory.resolve(String.format("%020d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private static FileLock lock(FileChannel channel, Path directory) throws IOException {
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException(directory + " is open in another process");
+            }
+            return lock;
+        } catch (OverlappingFileLockException e) {
+            throw new IOException(directory + " is already open in this process", e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already failing, keep the original exception
+        }
+    }
+}
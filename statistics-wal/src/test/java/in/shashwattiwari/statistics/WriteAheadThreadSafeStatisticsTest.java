@@ -0,0 +1,140 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteAheadThreadSafeStatisticsTest extends StatisticsTestBase {
+
+    private static final long SEGMENT_SIZE = 32 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private final List<WriteAheadThreadSafeStatistics> opened = new ArrayList<>();
+
+    @AfterEach
+    public void closeAll() {
+        opened.forEach(WriteAheadThreadSafeStatistics::close);
+    }
+
+    @Override
+    protected Statistics createStatistics() {
+        return open(directory.resolve(String.valueOf(opened.size())), EventLog.Durability.SYNC);
+    }
+
+    @Test
+    public void testStateSurvivesRestart() {
+        Path log = directory.resolve("restart");
+        WriteAheadThreadSafeStatistics statistics = open(log, EventLog.Durability.ASYNC);
+        statistics.event(5);
+        statistics.event(new int[]{15, 25}, 0, 2);
+        statistics.merge(new StatisticsSnapshot(2, -20, 200, -10, -10));
+        StatisticsSnapshot before = statistics.snapshot();
+        statistics.close();
+
+        WriteAheadThreadSafeStatistics reopened = open(log, EventLog.Durability.ASYNC);
+        assertEquals(before, reopened.snapshot(), "State should survive a restart.");
+        reopened.event(-50);
+        assertEquals(-50, reopened.min(), "Reopened instance should keep recording.");
+    }
+
+    @Test
+    public void testReplayAfterCrashSkipsTornFrame() throws IOException {
+        Path log = directory.resolve("crash");
+        WriteAheadThreadSafeStatistics statistics = open(log, EventLog.Durability.SYNC);
+        statistics.event(5);
+        statistics.event(7);
+
+        // the second frame starts after the first one: header, empty moments record and one event
+        Path segment = segments(log).getFirst();
+        try (RandomAccessFile raw = new RandomAccessFile(segment.toFile(), "rw")) {
+            raw.seek(2 * (8 + 5 + 1) - 1);
+            raw.write(0x7F);
+        }
+        VarHandleThreadSafeStatistics recovered = new VarHandleThreadSafeStatistics();
+        EventLog.replay(log, recovered);
+        assertEquals(new StatisticsSnapshot(1, 5, 25, 5, 5), recovered.snapshot(),
+                "Replay should stop at the torn frame.");
+    }
+
+    @Test
+    public void testCrashDuringRollLosesNothing() throws IOException {
+        Path log = directory.resolve("roll");
+        WriteAheadThreadSafeStatistics statistics = open(log, EventLog.Durability.SYNC);
+        statistics.event(5);
+        statistics.event(7);
+
+        // a crash after the next segment was created, before the checkpoint was moved to it
+        Path crashed = copy(log, directory.resolve("roll-crashed"));
+        Path next = segments(crashed).getFirst().resolveSibling(String.format("%020d.log", 1));
+        Files.write(next, new byte[(int) SEGMENT_SIZE]);
+        WriteAheadThreadSafeStatistics recovered = open(crashed, EventLog.Durability.SYNC);
+        assertEquals(statistics.snapshot(), recovered.snapshot(), "Recovery should replay the older segment.");
+
+        // and another crash right after recovery
+        WriteAheadThreadSafeStatistics recoveredAgain = open(copy(crashed, directory.resolve("roll-crashed-again")),
+                EventLog.Durability.SYNC);
+        assertEquals(statistics.snapshot(), recoveredAgain.snapshot(), "Recovery should not lose replayed events.");
+    }
+
+    @Test
+    public void testCheckpointsBoundReplay() throws IOException {
+        Path log = directory.resolve("checkpoints");
+        WriteAheadThreadSafeStatistics statistics = open(log, EventLog.Durability.ASYNC);
+        int[] values = IntStream.range(-50_000, 50_000).toArray();
+        statistics.event(values, 0, values.length);
+        statistics.event(42);
+
+        VarHandleThreadSafeStatistics replayed = new VarHandleThreadSafeStatistics();
+        statistics.close();
+        assertTrue(segments(log).size() <= 2, "Segments before the checkpoint should be deleted.");
+        EventLog.replay(log, replayed);
+        assertEquals(statistics.snapshot(), replayed.snapshot(), "Replay should rebuild the statistics.");
+    }
+
+    @Test
+    public void testDirectoryCannotBeOpenedTwice() {
+        Path log = directory.resolve("shared");
+        open(log, EventLog.Durability.SYNC);
+        assertThrows(UncheckedIOException.class,
+                () -> new WriteAheadThreadSafeStatistics(log, SEGMENT_SIZE, EventLog.Durability.SYNC));
+    }
+
+    private WriteAheadThreadSafeStatistics open(Path log, EventLog.Durability durability) {
+        WriteAheadThreadSafeStatistics statistics = new WriteAheadThreadSafeStatistics(log, SEGMENT_SIZE, durability);
+        opened.add(statistics);
+        return statistics;
+    }
+
+    // copies the files of an open log, as a crash would leave them
+    private static Path copy(Path log, Path target) throws IOException {
+        Files.createDirectories(target);
+        try (Stream<Path> files = Files.list(log)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, target.resolve(file.getFileName()));
+            }
+        }
+        return target;
+    }
+
+    private static List<Path> segments(Path log) throws IOException {
+        try (Stream<Path> files = Files.list(log)) {
+            return files.filter(file -> file.toString().endsWith(".log")).sorted().toList();
+        }
+    }
+}
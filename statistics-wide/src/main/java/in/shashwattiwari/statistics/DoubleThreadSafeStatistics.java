@@ -0,0 +1,199 @@
+package in.shashwattiwari.statistics;
+
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * {@code DoubleThreadSafeStatistics} provides a thread-safe implementation of the {@link DoubleStatistics}
+ * interface with numerically stable accumulation.
+ *
+ * <p>Floating-point addition rounds, and a long running sum loses the low-order bits of every small event added
+ * to it. The sum is therefore kept with Neumaier's compensated summation: a second field accumulates the rounding
+ * error of each addition, and the mean is computed from both. The variance is kept with Welford's algorithm, as
+ * a running mean and sum of squared deviations, which avoids the cancellation of
+ * {@code sumOfSquares / count - mean^2} when the variance is small compared to the mean.
+ *
+ * <p>The fields are guarded by a {@link StampedLock} like {@code StampedLockThreadSafeStatistics}, so recording
+ * allocates nothing and readers use optimistic reads. A batch is aggregated outside of the lock and combined with
+ * the formulas of Chan et al.
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     DoubleStatistics ratios = new DoubleThreadSafeStatistics();
+ *     ratios.event(0.25);
+ *     ratios.event(0.75);
+ *     System.out.println("Mean: " + ratios.mean());
+ * </pre>
+ *
+ * <h2>References:</h2>
+ * <ul>
+ *   <li>A. Neumaier, Rundungsfehleranalyse einiger Verfahren zur Summation endlicher Summen, ZAMM 54 (1974).</li>
+ *   <li>B. P. Welford, Note on a Method for Calculating Corrected Sums of Squares and Products, Technometrics 4
+ *   (1962).</li>
+ *   <li>T. F. Chan, G. H. Golub, R. J. LeVeque, Updating Formulae and a Pairwise Algorithm for Computing Sample
+ *   Variances (1979).</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class DoubleThreadSafeStatistics implements DoubleStatistics {
+
+    private long count;
+    private double sum;
+    private double compensation;
+    private double runningMean;
+    private double squaredDeviations;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private final StampedLock lock = new StampedLock();
+
+    @Override
+    public void event(double x) {
+        long stamp = lock.writeLock();
+        try {
+            count++;
+            add(x);
+            double delta = x - runningMean;
+            runningMean += delta / count;
+            squaredDeviations += delta * (x - runningMean);
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void event(double[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        if (length == 0) return;
+
+        // aggregate outside the lock, so the whole batch costs a single lock hold
+        double batchSum = 0;
+        double batchCompensation = 0;
+        double batchMean = 0;
+        double batchSquaredDeviations = 0;
+        double batchMin = Double.POSITIVE_INFINITY;
+        double batchMax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            double x = values[offset + i];
+            double t = batchSum + x;
+            batchCompensation += Math.abs(batchSum) >= Math.abs(x) ? (batchSum - t) + x : (x - t) + batchSum;
+            batchSum = t;
+            double delta = x - batchMean;
+            batchMean += delta / (i + 1);
+            batchSquaredDeviations += delta * (x - batchMean);
+            batchMin = Math.min(batchMin, x);
+            batchMax = Math.max(batchMax, x);
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            long combined = count + length;
+            double delta = batchMean - runningMean;
+            runningMean += delta * length / combined;
+            squaredDeviations += batchSquaredDeviations + delta * delta * count / combined * length;
+            count = combined;
+            add(batchSum);
+            add(batchCompensation);
+            min = Math.min(min, batchMin);
+            max = Math.max(max, batchMax);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long count() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double min() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        double min = this.min;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                min = this.min;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count == 0 ? 0 : min;
+    }
+
+    @Override
+    public double max() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        double max = this.max;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                max = this.max;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count == 0 ? 0 : max;
+    }
+
+    @Override
+    public double mean() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        double sum = this.sum;
+        double compensation = this.compensation;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                sum = this.sum;
+                compensation = this.compensation;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count == 0 ? 0 : (sum + compensation) / count;
+    }
+
+    @Override
+    public double variance() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        double squaredDeviations = this.squaredDeviations;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                squaredDeviations = this.squaredDeviations;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count == 0 ? 0 : squaredDeviations / count;
+    }
+
+    // Neumaier's compensated addition, must hold the write lock
+    private void add(double x) {
+        double t = sum + x;
+        compensation += Math.abs(sum) >= Math.abs(x) ? (sum - t) + x : (x - t) + sum;
+        sum = t;
+    }
+}
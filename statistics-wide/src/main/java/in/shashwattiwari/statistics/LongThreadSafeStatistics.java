@@ -0,0 +1,194 @@
+package in.shashwattiwari.statistics;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * {@code LongThreadSafeStatistics} provides a thread-safe implementation of the {@link LongStatistics} interface
+ * whose sums are exact over the whole {@code long} range.
+ *
+ * <p>The sum and the sum of squares are kept as 128-bit integers, each in a high and a low {@code long} field
+ * updated with {@link Int128}. The square of an event is computed exactly with {@link Math#multiplyHigh}, so
+ * nothing is lost to overflow as long as the sum of squares stays below {@code 2^127}: a billion events of
+ * magnitude up to {@code 2^48}, for example. The fields are guarded by a {@link StampedLock} like
+ * {@code StampedLockThreadSafeStatistics}, so recording allocates nothing and readers use optimistic reads.
+ *
+ * <p>The variance is computed exactly as {@code (count * sumOfSquares - sum^2) / count^2} and only rounded to a
+ * {@code double} at the end, so it does not suffer the cancellation of {@code sumOfSquares / count - mean^2}.
+ * That uses {@link BigInteger}, but only when reading.
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     LongStatistics latencies = new LongThreadSafeStatistics();
+ *     latencies.event(System.nanoTime() - start);
+ *     System.out.println("Mean: " + latencies.mean() + " ns");
+ * </pre>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class LongThreadSafeStatistics implements LongStatistics {
+
+    private long count;
+    private long sumHigh;
+    private long sumLow;
+    private long sumOfSquaresHigh;
+    private long sumOfSquaresLow;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    private final StampedLock lock = new StampedLock();
+
+    @Override
+    public void event(long n) {
+        long squareHigh = Int128.squareHigh(n);
+        long squareLow = n * n;
+        long stamp = lock.writeLock();
+        try {
+            count++;
+            sumHigh += Int128.high(n) + Int128.carry(sumLow, n);
+            sumLow += n;
+            sumOfSquaresHigh += squareHigh + Int128.carry(sumOfSquaresLow, squareLow);
+            sumOfSquaresLow += squareLow;
+            min = Math.min(min, n);
+            max = Math.max(max, n);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void event(long[] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        if (length == 0) return;
+
+        // aggregate outside the lock, so the whole batch costs a single lock hold
+        long batchSumHigh = 0;
+        long batchSumLow = 0;
+        long batchSumOfSquaresHigh = 0;
+        long batchSumOfSquaresLow = 0;
+        long batchMin = Long.MAX_VALUE;
+        long batchMax = Long.MIN_VALUE;
+        for (int i = offset; i < offset + length; i++) {
+            long n = values[i];
+            long squareLow = n * n;
+            batchSumHigh += Int128.high(n) + Int128.carry(batchSumLow, n);
+            batchSumLow += n;
+            batchSumOfSquaresHigh += Int128.squareHigh(n) + Int128.carry(batchSumOfSquaresLow, squareLow);
+            batchSumOfSquaresLow += squareLow;
+            batchMin = Math.min(batchMin, n);
+            batchMax = Math.max(batchMax, n);
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            count += length;
+            sumHigh += batchSumHigh + Int128.carry(sumLow, batchSumLow);
+            sumLow += batchSumLow;
+            sumOfSquaresHigh += batchSumOfSquaresHigh + Int128.carry(sumOfSquaresLow, batchSumOfSquaresLow);
+            sumOfSquaresLow += batchSumOfSquaresLow;
+            min = Math.min(min, batchMin);
+            max = Math.max(max, batchMax);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long count() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long min() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        long min = this.min;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                min = this.min;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count == 0 ? 0 : min;
+    }
+
+    @Override
+    public long max() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        long max = this.max;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                max = this.max;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count == 0 ? 0 : max;
+    }
+
+    @Override
+    public double mean() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        long sumHigh = this.sumHigh;
+        long sumLow = this.sumLow;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                sumHigh = this.sumHigh;
+                sumLow = this.sumLow;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count == 0 ? 0 : Int128.toDouble(sumHigh, sumLow) / count;
+    }
+
+    @Override
+    public double variance() {
+        long stamp = lock.tryOptimisticRead();
+        long count = this.count;
+        long sumHigh = this.sumHigh;
+        long sumLow = this.sumLow;
+        long sumOfSquaresHigh = this.sumOfSquaresHigh;
+        long sumOfSquaresLow = this.sumOfSquaresLow;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = this.count;
+                sumHigh = this.sumHigh;
+                sumLow = this.sumLow;
+                sumOfSquaresHigh = this.sumOfSquaresHigh;
+                sumOfSquaresLow = this.sumOfSquaresLow;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (count == 0) return 0;
+
+        BigInteger sum = Int128.toBigInteger(sumHigh, sumLow);
+        BigInteger scaled = Int128.toBigInteger(sumOfSquaresHigh, sumOfSquaresLow)
+                .multiply(BigInteger.valueOf(count))
+                .subtract(sum.multiply(sum));
+        return scaled.doubleValue() / count / count;
+    }
+}
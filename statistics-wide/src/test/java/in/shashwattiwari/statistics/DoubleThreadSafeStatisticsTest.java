@@ -0,0 +1,91 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DoubleThreadSafeStatisticsTest {
+
+    @Test
+    public void testNoEvents() {
+        DoubleStatistics statistics = new DoubleThreadSafeStatistics();
+        assertEquals(0, statistics.count(), "Count should be 0 when no events are recorded.");
+        assertEquals(0, statistics.min(), "Minimum value should be 0 when no events are recorded.");
+        assertEquals(0, statistics.max(), "Maximum value should be 0 when no events are recorded.");
+        assertEquals(0, statistics.mean(), "Mean should be 0 when no events are recorded.");
+        assertEquals(0, statistics.variance(), "Variance should be 0 when no events are recorded.");
+    }
+
+    @Test
+    public void testFractionalEvents() {
+        DoubleStatistics statistics = new DoubleThreadSafeStatistics();
+        statistics.event(0.25);
+        statistics.event(new double[]{9, 0.75, 1.5, 9}, 1, 2);
+        assertEquals(0.25, statistics.min(), "Minimum value is incorrect.");
+        assertEquals(1.5, statistics.max(), "Maximum value is incorrect.");
+        assertEquals(2.5 / 3, statistics.mean(), 1e-15, "Mean is incorrect.");
+        assertEquals((0.0625 + 0.5625 + 2.25) / 3 - (2.5 / 3) * (2.5 / 3), statistics.variance(), 1e-15,
+                "Variance is incorrect.");
+    }
+
+    @Test
+    public void testCompensatedSum() {
+        DoubleStatistics statistics = new DoubleThreadSafeStatistics();
+        statistics.event(1e16);
+        for (int i = 0; i < 10_000; i++) {
+            statistics.event(1.0);
+        }
+        statistics.event(-1e16);
+        // a naive sum loses every 1.0 added to 1e16
+        assertEquals(10_000.0 / 10_002, statistics.mean(), 1e-12, "Small events should not be lost.");
+    }
+
+    @Test
+    public void testVarianceOfLargeCloseValues() {
+        double[] values = new double[1_000];
+        Arrays.setAll(values, i -> 1e9 + i + 1);
+        DoubleStatistics single = new DoubleThreadSafeStatistics();
+        DoubleStatistics batched = new DoubleThreadSafeStatistics();
+        for (double value : values) {
+            single.event(value);
+        }
+        batched.event(values, 0, 500);
+        batched.event(values, 500, 500);
+        // the variance of 1..n is (n^2 - 1) / 12, independent of the offset
+        assertEquals((1_000.0 * 1_000 - 1) / 12, single.variance(), 1e-6, "Variance should not cancel out.");
+        assertEquals((1_000.0 * 1_000 - 1) / 12, batched.variance(), 1e-6, "Batches should combine exactly.");
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        DoubleStatistics statistics = new DoubleThreadSafeStatistics();
+        int numThreads = 10;
+        int numEventsPerThread = 1_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            executorService.submit(() -> {
+                try {
+                    for (int i = 1; i <= numEventsPerThread; i++) {
+                        statistics.event(i / 4.0);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        executorService.shutdown();
+
+        assertEquals(numThreads * numEventsPerThread, statistics.count(), "Count is incorrect.");
+        assertEquals(0.25, statistics.min(), "Minimum value is incorrect.");
+        assertEquals(250, statistics.max(), "Maximum value is incorrect.");
+        assertEquals(1_001 / 8.0, statistics.mean(), 1e-9, "Mean is incorrect.");
+        assertEquals((1_000.0 * 1_000 - 1) / 12 / 16, statistics.variance(), 1e-6, "Variance is incorrect.");
+    }
+}
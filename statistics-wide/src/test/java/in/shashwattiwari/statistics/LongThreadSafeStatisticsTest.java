@@ -0,0 +1,103 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LongThreadSafeStatisticsTest {
+
+    @Test
+    public void testNoEvents() {
+        LongStatistics statistics = new LongThreadSafeStatistics();
+        assertEquals(0, statistics.count(), "Count should be 0 when no events are recorded.");
+        assertEquals(0, statistics.min(), "Minimum value should be 0 when no events are recorded.");
+        assertEquals(0, statistics.max(), "Maximum value should be 0 when no events are recorded.");
+        assertEquals(0, statistics.mean(), 0.001, "Mean should be 0 when no events are recorded.");
+        assertEquals(0, statistics.variance(), 0.001, "Variance should be 0 when no events are recorded.");
+    }
+
+    @Test
+    public void testEventsBeyondIntRange() {
+        LongStatistics statistics = new LongThreadSafeStatistics();
+        long nanos = 5_000_000_000L;
+        statistics.event(nanos);
+        statistics.event(3 * nanos);
+        assertEquals(nanos, statistics.min(), "Minimum value should not be truncated.");
+        assertEquals(3 * nanos, statistics.max(), "Maximum value should not be truncated.");
+        assertEquals(2 * nanos, statistics.mean(), 0.001, "Mean should not be truncated.");
+        assertEquals((double) nanos * nanos, statistics.variance(), 1, "Variance should not overflow.");
+    }
+
+    @Test
+    public void testSumsBeyond64Bits() {
+        LongStatistics statistics = new LongThreadSafeStatistics();
+        long[] values = {Long.MAX_VALUE, Long.MAX_VALUE / 2, -(1L << 61), 12_345, -(1L << 40)};
+        statistics.event(values[0]);
+        statistics.event(values, 1, values.length - 1);
+
+        assertEquals(values.length, statistics.count(), "Count is incorrect.");
+        assertEquals(exactMean(values), statistics.mean(), Math.ulp(exactMean(values)), "Mean should be exact.");
+        assertEquals(exactVariance(values), statistics.variance(), 2 * Math.ulp(exactVariance(values)),
+                "Variance should be exact.");
+    }
+
+    @Test
+    public void testVarianceOfLargeCloseValues() {
+        LongStatistics statistics = new LongThreadSafeStatistics();
+        long base = 1L << 50;
+        statistics.event(LongStream.rangeClosed(1, 1_000).map(i -> base + i).toArray(), 0, 1_000);
+        // the variance of 1..n is (n^2 - 1) / 12, independent of the offset
+        assertEquals((1_000.0 * 1_000 - 1) / 12, statistics.variance(), 1e-9, "Variance should not cancel out.");
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        LongStatistics statistics = new LongThreadSafeStatistics();
+        int numThreads = 10;
+        int numEventsPerThread = 1_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            executorService.submit(() -> {
+                try {
+                    for (int i = 1; i <= numEventsPerThread; i++) {
+                        statistics.event(i * 1_000_000_000L);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        executorService.shutdown();
+
+        assertEquals(numThreads * numEventsPerThread, statistics.count(), "Count is incorrect.");
+        assertEquals(1_000_000_000L, statistics.min(), "Minimum value is incorrect.");
+        assertEquals(1_000_000_000_000L, statistics.max(), "Maximum value is incorrect.");
+        assertEquals(500.5e9, statistics.mean(), 0.001, "Mean is incorrect.");
+    }
+
+    private static double exactMean(long[] values) {
+        BigDecimal sum = new BigDecimal(LongStream.of(values).mapToObj(BigInteger::valueOf)
+                .reduce(BigInteger.ZERO, BigInteger::add));
+        return sum.divide(BigDecimal.valueOf(values.length), MathContext.DECIMAL128).doubleValue();
+    }
+
+    private static double exactVariance(long[] values) {
+        BigDecimal mean = new BigDecimal(LongStream.of(values).mapToObj(BigInteger::valueOf)
+                .reduce(BigInteger.ZERO, BigInteger::add)).divide(BigDecimal.valueOf(values.length),
+                MathContext.DECIMAL128);
+        BigDecimal squaredDeviations = LongStream.of(values)
+                .mapToObj(v -> BigDecimal.valueOf(v).subtract(mean).pow(2))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return squaredDeviations.divide(BigDecimal.valueOf(values.length), MathContext.DECIMAL128).doubleValue();
+    }
+}
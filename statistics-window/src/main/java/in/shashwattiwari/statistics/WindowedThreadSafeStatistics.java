@@ -0,0 +1,162 @@
+package in.shashwattiwari.statistics;
+
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@code WindowedThreadSafeStatistics} provides a thread-safe implementation of the {@link Statistics} interface
+ * over a sliding time window, e.g. the last 60 seconds.
+ *
+ * <p>Time is cut into fixed intervals read from a pluggable {@link InstantSource}. The window is a ring with one
+ * bucket per interval; each bucket is a {@link VarHandleThreadSafeStatistics} tagged with the interval it belongs
+ * to. An event goes to the bucket of the current interval. Reads fold the buckets whose interval is still inside
+ * the window, so they cost O(intervals) no matter how many events were recorded, and events that left the window
+ * simply stop being counted.
+ *
+ * <h2>Key Design Decisions:</h2>
+ * <ul>
+ *   <li>A bucket is never reset in place. The first writer of a new interval replaces the expired bucket of its
+ *   slot with a fresh one through a compare-and-set, so expiry does not block writers or readers.</li>
+ *   <li>A writer still holding an expired bucket may finish its update there; that event belonged to an interval
+ *   outside the window anyway.</li>
+ *   <li>Because old buckets are discarded, the sums only ever cover one window and do not overflow over the
+ *   lifetime of the process.</li>
+ * </ul>
+ *
+ * <h2>Usage Example:</h2>
+ * <pre>
+ *     Statistics stats = new WindowedThreadSafeStatistics(Duration.ofSeconds(1), 60, InstantSource.system());
+ *     stats.event(5);
+ *     stats.event(10);
+ *     System.out.println("Mean of the last minute: " + stats.mean());
+ * </pre>
+ *
+ * <h2>Performance Considerations:</h2>
+ * <ul>
+ *   <li>The window moves in steps of one interval: more intervals give a smoother window and slower reads.</li>
+ *   <li>One bucket is allocated per interval in which an event was recorded, never per event.</li>
+ *   <li>Like {@code StripedThreadSafeStatistics}, a read is consistent per bucket but not across buckets.</li>
+ * </ul>
+ *
+ * @author Shashwat Tiwari
+ */
+
+public class WindowedThreadSafeStatistics implements Statistics {
+
+    static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(1);
+    static final int DEFAULT_INTERVALS = 60;
+
+    private static final class Bucket extends VarHandleThreadSafeStatistics {
+        final long interval;
+
+        Bucket(long interval) {
+            this.interval = interval;
+        }
+    }
+
+    private final long intervalMillis;
+    private final InstantSource clock;
+    private final AtomicReferenceArray<Bucket> ring;
+
+    /**
+     * A window of the last {@value #DEFAULT_INTERVALS} seconds on the system clock.
+     */
+    public WindowedThreadSafeStatistics() {
+        this(DEFAULT_INTERVAL, DEFAULT_INTERVALS, InstantSource.system());
+    }
+
+    /**
+     * @param interval  granularity at which events expire, at least one millisecond
+     * @param intervals number of intervals in the window
+     * @param clock     source of the current time
+     */
+    public WindowedThreadSafeStatistics(Duration interval, int intervals, InstantSource clock) {
+        if (interval.toMillis() < 1) {
+            throw new IllegalArgumentException("interval must be at least one millisecond: " + interval);
+        }
+        if (intervals < 1) {
+            throw new IllegalArgumentException("intervals must be positive: " + intervals);
+        }
+        this.intervalMillis = interval.toMillis();
+        this.clock = clock;
+        this.ring = new AtomicReferenceArray<>(intervals);
+    }
+
+    @Override
+    public void event(int n) {
+        bucket().event(n);
+    }
+
+    @Override
+    public void event(int[] values, int offset, int length) {
+        merge(BatchAggregator.getInstance().aggregate(values, offset, length));
+    }
+
+    @Override
+    public void merge(StatisticsSnapshot snapshot) {
+        if (snapshot.count() == 0) return;
+
+        bucket().merge(snapshot);
+    }
+
+    @Override
+    public int min() {
+        return snapshot().min();
+    }
+
+    @Override
+    public int max() {
+        return snapshot().max();
+    }
+
+    @Override
+    public float mean() {
+        return snapshot().mean();
+    }
+
+    @Override
+    public float variance() {
+        return snapshot().variance();
+    }
+
+    /**
+     * Folds the buckets of the intervals still inside the window. Each bucket is read consistently, buckets are
+     * read one after the other.
+     */
+    @Override
+    public StatisticsSnapshot snapshot() {
+        long current = currentInterval();
+        StatisticsSnapshot total = StatisticsSnapshot.EMPTY;
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && bucket.interval > current - ring.length() && bucket.interval <= current) {
+                total = total.merge(bucket.snapshot());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the bucket of the current interval, replacing an expired one if needed.
+     */
+    private Bucket bucket() {
+        long current = currentInterval();
+        int slot = (int) Math.floorMod(current, (long) ring.length());
+        while (true) {
+            Bucket bucket = ring.get(slot);
+            // a newer bucket means this thread was descheduled across an interval boundary, record into it
+            if (bucket != null && bucket.interval >= current) {
+                return bucket;
+            }
+            Bucket created = new Bucket(current);
+            if (ring.compareAndSet(slot, bucket, created)) {
+                return created;
+            }
+        }
+    }
+
+    private long currentInterval() {
+        return Math.floorDiv(clock.millis(), intervalMillis);
+    }
+}
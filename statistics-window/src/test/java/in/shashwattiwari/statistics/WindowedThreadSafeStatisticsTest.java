@@ -0,0 +1,47 @@
+package in.shashwattiwari.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WindowedThreadSafeStatisticsTest extends StatisticsTestBase {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Override
+    protected Statistics createStatistics() {
+        return new WindowedThreadSafeStatistics();
+    }
+
+    @Test
+    public void testEventsExpireWithTheWindow() {
+        Statistics statistics = new WindowedThreadSafeStatistics(Duration.ofSeconds(1), 3,
+                () -> Instant.ofEpochMilli(now.get()));
+
+        statistics.event(100);
+        now.addAndGet(1_000);
+        statistics.event(new int[]{10, 20}, 0, 2);
+        now.addAndGet(1_000);
+        statistics.event(30);
+        assertEquals(4, statistics.snapshot().count(), "All intervals should be inside the window.");
+        assertEquals(100, statistics.max(), "Maximum value is incorrect.");
+
+        now.addAndGet(1_000);
+        assertEquals(3, statistics.snapshot().count(), "The oldest interval should have left the window.");
+        assertEquals(30, statistics.max(), "Maximum value should only consider the window.");
+        assertEquals(20, statistics.mean(), 0.001, "Mean should only consider the window.");
+
+        // the new interval reuses the slot of the expired one
+        statistics.event(-5);
+        assertEquals(-5, statistics.min(), "Minimum value is incorrect.");
+        assertEquals(4, statistics.snapshot().count(), "The reused slot should only hold the new interval.");
+
+        now.addAndGet(10_000);
+        assertEquals(0, statistics.snapshot().count(), "Everything should expire after a quiet period.");
+        assertEquals(0, statistics.mean(), 0.001, "Mean should be 0 for an empty window.");
+    }
+}